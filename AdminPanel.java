@@ -1,15 +1,20 @@
 import java.awt.*;
 import java.awt.event.*;
-import java.sql.*;
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.LongConsumer;
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableModel;
 
-public class AdminPanel extends JPanel {
+public class AdminPanel extends JPanel implements LazyPanel {
     private CardLayout cardLayout;
     private JPanel contentPanel;
     private UserListPanel userListPanel;
 
-    public AdminPanel() {
+    public AdminPanel(Session session) {
         setLayout(new BorderLayout());
         setBackground(Color.decode("#CAF0F8"));
 
@@ -28,8 +33,8 @@ public class AdminPanel extends JPanel {
         cardLayout = new CardLayout();
         contentPanel = new JPanel(cardLayout);
 
-        userListPanel = new UserListPanel();
-        AddUserPanel addUserPanel = new AddUserPanel(userListPanel);
+        userListPanel = new UserListPanel(session);
+        AddUserPanel addUserPanel = new AddUserPanel(session, userListPanel);
         DashboardPanel dashboardPanel = new DashboardPanel();
 
         contentPanel.add(dashboardPanel, "Dashboard");
@@ -38,14 +43,26 @@ public class AdminPanel extends JPanel {
 
         add(contentPanel, BorderLayout.CENTER);
 
-        btnDashboard.addActionListener(e -> cardLayout.show(contentPanel, "Dashboard"));
-        btnAddUser.addActionListener(e -> cardLayout.show(contentPanel, "AddUser"));
+        btnDashboard.addActionListener(e -> {
+            userListPanel.cancelLoads();
+            cardLayout.show(contentPanel, "Dashboard");
+        });
+        btnAddUser.addActionListener(e -> {
+            userListPanel.cancelLoads();
+            cardLayout.show(contentPanel, "AddUser");
+        });
         btnUserList.addActionListener(e -> {
             userListPanel.loadUsers();
             cardLayout.show(contentPanel, "UserList");
         });
     }
 
+    // The dashboard comes up first and the user list loads only when opened, so nothing to wait for
+    @Override
+    public void firstShown(Runnable onReady) {
+        onReady.run();
+    }
+
     private JButton createStyledButton(String text) {
         JButton button = new JButton(text);
         button.setBackground(Color.decode("#0077B6"));
@@ -69,29 +86,203 @@ public class AdminPanel extends JPanel {
         return button;
     }
 
+    // The admin panel needs a signed-in session, so start from the login window
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            JFrame frame = new JFrame("Admin Panel");
-            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-            frame.setSize(800, 600);
-            frame.add(new AdminPanel());
-            frame.setVisible(true);
+        Login.main(args);
+    }
+}
+
+class AddUserPanel extends JPanel {
+    private final Session session;
+    private JTextField txtId, txtName;
+    private JComboBox<String> cmbRole;
+    private JPasswordField txtPassword;
+    private JButton btnRegister, btnImport;
+    private JProgressBar importProgress;
+    private UserListPanel userListPanel;
+
+    public AddUserPanel(Session session, UserListPanel userListPanel) {
+        this.session = session;
+        this.userListPanel = userListPanel;
+        setLayout(new GridBagLayout());
+        setBackground(Color.decode("#90E0EF"));
+
+        JPanel formPanel = new JPanel(new GridBagLayout());
+        formPanel.setBackground(Color.decode("#CAF0F8"));
+        formPanel.setOpaque(true);
+        formPanel.setPreferredSize(new Dimension(500, 480));
+
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(10, 10, 10, 10);
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.anchor = GridBagConstraints.WEST;
+
+        formPanel.add(new JLabel("ID:"), gbc);
+        gbc.gridx = 1;
+        txtId = new JTextField(30);
+        txtId.setBorder(BorderFactory.createLineBorder(Color.GRAY, 1));
+        txtId.setPreferredSize(new Dimension(300, 40));
+        formPanel.add(txtId, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy++;
+        formPanel.add(new JLabel("Name:"), gbc);
+        gbc.gridx = 1;
+        txtName = new JTextField(30);
+        txtName.setPreferredSize(new Dimension(300, 40));
+        formPanel.add(txtName, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy++;
+        formPanel.add(new JLabel("Role:"), gbc);
+        gbc.gridx = 1;
+        cmbRole = new JComboBox<>(new String[]{"Student", "Teacher"});
+        cmbRole.setPreferredSize(new Dimension(300, 40));
+        formPanel.add(cmbRole, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy++;
+        formPanel.add(new JLabel("Password:"), gbc);
+        gbc.gridx = 1;
+        txtPassword = new JPasswordField(30);
+        txtPassword.setPreferredSize(new Dimension(300, 40));
+        formPanel.add(txtPassword, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy++;
+        gbc.gridwidth = 2;
+        gbc.anchor = GridBagConstraints.CENTER;
+        btnRegister = new JButton("Register");
+        formPanel.add(btnRegister, gbc);
+
+        gbc.gridy++;
+        btnImport = new JButton("Import CSV/TSV...");
+        formPanel.add(btnImport, gbc);
+
+        gbc.gridy++;
+        importProgress = new JProgressBar(0, 100);
+        importProgress.setStringPainted(true);
+        importProgress.setPreferredSize(new Dimension(300, 20));
+        importProgress.setVisible(false);
+        formPanel.add(importProgress, gbc);
+
+        add(formPanel);
+
+        btnRegister.addActionListener(e -> addUserToDatabase());
+        btnImport.addActionListener(e -> importUsers());
+    }
+
+    private void addUserToDatabase() {
+        String idText = txtId.getText();
+        String name = txtName.getText();
+        String role = (String) cmbRole.getSelectedItem();
+        String password = new String(txtPassword.getPassword());
+
+        if (idText.isEmpty() || name.isEmpty() || role.isEmpty() || password.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please fill in all fields.");
+            return;
+        }
+        int id;
+        try {
+            id = Integer.parseInt(idText.trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "ID must be a number.");
+            return;
+        }
+
+        AsyncDb.submit("users.add", () -> {
+            AuthService.check(session, "Admin");
+            String hash = AuthService.hashPassword(password);
+            return Repositories.users().insert(new UserRepository.NewUser(id, name, role, hash, "Inactive"));
+        }, added -> {
+            if (!added) {
+                JOptionPane.showMessageDialog(this, "ID already exists, or there is already a " + role.toLowerCase()
+                    + " with this name. Choose a different ID or name.");
+                return;
+            }
+            JOptionPane.showMessageDialog(this, "User added successfully!");
+            userListPanel.loadUsers();
+            txtId.setText("");
+            txtName.setText("");
+            cmbRole.setSelectedIndex(0);
+            txtPassword.setText("");
+        }, ex -> {
+            JOptionPane.showMessageDialog(this, "Error adding user.");
         });
     }
+
+    // Streams the file through UserImport off the EDT; the user list is reloaded once at the end
+    private void importUsers() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV or TSV files", "csv", "tsv", "txt"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        btnImport.setEnabled(false);
+        importProgress.setValue(0);
+        importProgress.setVisible(true);
+
+        AsyncDb.submit("users.import", Duration.ofHours(1), () -> {
+            AuthService.check(session, "Admin");
+            return UserImport.run(file, percent -> SwingUtilities.invokeLater(() -> importProgress.setValue(percent)));
+        }, result -> {
+            finishImport();
+            showImportResult(result);
+        }, ex -> {
+            finishImport();
+            JOptionPane.showMessageDialog(this, "Import stopped: " + ex.getMessage()
+                + "\nRows imported before the error were kept.", "Import Failed", JOptionPane.ERROR_MESSAGE);
+        });
+    }
+
+    private void finishImport() {
+        btnImport.setEnabled(true);
+        importProgress.setVisible(false);
+        userListPanel.loadUsers();
+    }
+
+    private void showImportResult(UserImport.Result result) {
+        String summary = String.format("Imported %,d of %,d users in %.1f s.", result.imported(), result.rows(),
+            result.elapsedNanos() / 1e9);
+        if (result.failed() == 0) {
+            JOptionPane.showMessageDialog(this, summary, "Import Finished", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        StringBuilder details = new StringBuilder();
+        for (UserImport.RowError error : result.errors()) {
+            details.append("Line ").append(error.line()).append(": ").append(error.message()).append('\n');
+        }
+        if (result.failed() > result.errors().size()) {
+            details.append(String.format("... and %,d more%n", result.failed() - result.errors().size()));
+        }
+        JTextArea errors = new JTextArea(details.toString(), 15, 60);
+        errors.setEditable(false);
+        JScrollPane scroll = new JScrollPane(errors);
+        Object[] message = {summary + String.format(" %,d rows were skipped:", result.failed()), scroll};
+        JOptionPane.showMessageDialog(this, message, "Import Finished", JOptionPane.WARNING_MESSAGE);
+    }
 }
 
 class UserListPanel extends JPanel {
+    private final Session session;
     private JTable table;
-    private DefaultTableModel model;
-    private JTextField txtName;
+    private UserTableModel model;
+    private JLabel lblCount, lblExport;
+    private JTextField txtName, txtSearch;
     private JComboBox<String> cmbRole;
-    private JButton btnEdit, btnDelete, btnSave;
+    private JButton btnEdit, btnDelete, btnSave, btnExport;
+    private User editing; // as it was when Edit copied it into the fields
 
-    public UserListPanel() {
+    public UserListPanel(Session session) {
+        this.session = session;
         setLayout(new BorderLayout());
-        model = new DefaultTableModel(new String[]{"ID", "Name", "Role", "Status"}, 0);
+        model = new UserTableModel();
         table = new JTable(model);
         add(new JScrollPane(table), BorderLayout.CENTER);
+        lblCount = new JLabel(model.getCountText());
+        model.addTableModelListener(e -> lblCount.setText(model.getCountText()));
 
         JPanel editPanel = new JPanel(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
@@ -118,86 +309,312 @@ class UserListPanel extends JPanel {
         add(editPanel, BorderLayout.SOUTH);
 
         JPanel btnPanel = new JPanel();
+        txtSearch = new JTextField(15);
+        txtSearch.setToolTipText("Show users whose name starts with this");
+        Debounce.onTextChange(txtSearch, 250, model::search);
+        btnPanel.add(new JLabel("Search:"));
+        btnPanel.add(txtSearch);
         btnEdit = new JButton("Edit Selected");
         btnSave = new JButton("Save Changes");
         btnDelete = new JButton("Delete");
         btnPanel.add(btnEdit);
         btnPanel.add(btnSave);
+        btnExport = new JButton("Export...");
+        lblExport = new JLabel();
         btnPanel.add(btnDelete);
+        btnPanel.add(btnExport);
+        btnPanel.add(lblCount);
+        btnPanel.add(lblExport);
         add(btnPanel, BorderLayout.NORTH);
 
         btnEdit.addActionListener(e -> editUser());
         btnDelete.addActionListener(e -> deleteUser());
         btnSave.addActionListener(e -> saveChanges());
+        btnExport.addActionListener(e -> exportTable());
     }
 
     public void loadUsers() {
-        model.setRowCount(0);
-        try (Connection con = Database.getConnection();
-             Statement stmt = con.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT id, name, role, status FROM users")) {
-            while (rs.next()) {
-                model.addRow(new Object[]{rs.getString("id"), rs.getString("name"), rs.getString("role"), rs.getString("status")});
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
+        model.reload();
     }
 
-    private void editUser() {
+    public void cancelLoads() {
+        model.cancelLoads();
+    }
+
+    // Null when nothing is selected or the selected row has not been fetched yet
+    private User getSelectedUser() {
         int selectedRow = table.getSelectedRow();
-        if (selectedRow == -1) {
+        return selectedRow == -1 ? null : model.getUserAt(selectedRow);
+    }
+
+    private void editUser() {
+        User user = getSelectedUser();
+        if (user == null) {
             JOptionPane.showMessageDialog(this, "Please select a user to edit.");
             return;
         }
-        txtName.setText((String) model.getValueAt(selectedRow, 1));
-        cmbRole.setSelectedItem(model.getValueAt(selectedRow, 2));
+        editing = user;
+        txtName.setText(user.name());
+        cmbRole.setSelectedItem(user.role());
     }
 
     private void saveChanges() {
-        int selectedRow = table.getSelectedRow();
-        if (selectedRow == -1) {
+        User user = getSelectedUser();
+        if (user == null) {
             JOptionPane.showMessageDialog(this, "Please select a user to save changes.");
             return;
         }
-        String id = (String) model.getValueAt(selectedRow, 0);
         String newName = txtName.getText();
         String newRole = (String) cmbRole.getSelectedItem();
         if (!newName.trim().isEmpty()) {
-            try (Connection con = Database.getConnection();
-                 PreparedStatement stmt = con.prepareStatement("UPDATE users SET name=?, role=? WHERE id=?")) {
-                stmt.setString(1, newName);
-                stmt.setString(2, newRole);
-                stmt.setString(3, id);
-                stmt.executeUpdate();
-                loadUsers();
+            // The version the admin started editing from, even if the list has been refreshed since
+            int version = editing != null && editing.id() == user.id() ? editing.version() : user.version();
+            saveChanges(user.id(), version, newName, newRole);
+        }
+    }
+
+    // A compare-and-set: if someone else saved this user after `version`, nothing is written and the
+    // admin sees their change and chooses whether to save over it
+    private void saveChanges(int id, int version, String newName, String newRole) {
+        AsyncDb.submit("users.update", () -> {
+            AuthService.check(session, "Admin");
+            return Repositories.users().update(id, version, newName, newRole);
+        }, result -> {
+            loadUsers();
+            User current = result.current();
+            if (result.updated()) {
+                editing = null;
                 JOptionPane.showMessageDialog(this, "User updated successfully!");
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "Error updating user.");
+            } else if (current == null) {
+                editing = null;
+                JOptionPane.showMessageDialog(this, "This user has been deleted by someone else.", "Edit Conflict",
+                    JOptionPane.WARNING_MESSAGE);
+            } else {
+                int choice = JOptionPane.showConfirmDialog(this,
+                    "Someone else changed this user while you were editing.\n\n"
+                        + "Now:          " + current.name() + " (" + current.role() + ")\n"
+                        + "Your changes: " + newName + " (" + newRole + ")\n\n"
+                        + "Save your changes over theirs?",
+                    "Edit Conflict", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+                if (choice == JOptionPane.YES_OPTION) {
+                    saveChanges(id, current.version(), newName, newRole);
+                } else {
+                    editing = current;
+                    txtName.setText(current.name());
+                    cmbRole.setSelectedItem(current.role());
+                }
             }
+        }, ex -> {
+            JOptionPane.showMessageDialog(this, "Error updating user.");
+        });
+    }
+
+    // Streams a whole table to a file through DataExport, off the EDT and without going through the table model
+    private void exportTable() {
+        String[] tables = {"Users", "Appointments"};
+        String table = (String) JOptionPane.showInputDialog(this, "Table to export:", "Export",
+            JOptionPane.QUESTION_MESSAGE, null, tables, tables[0]);
+        if (table == null) {
+            return;
         }
+        DataExport.Format format = (DataExport.Format) JOptionPane.showInputDialog(this,
+            "Format (BINARY is compact and described in DataExport):", "Export", JOptionPane.QUESTION_MESSAGE, null,
+            DataExport.Format.values(), DataExport.Format.CSV);
+        if (format == null) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File(table.toLowerCase() + "." + format.extension));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        btnExport.setEnabled(false);
+        lblExport.setText("Exporting " + table.toLowerCase() + "...");
+
+        AsyncDb.submit("export." + table.toLowerCase(), Duration.ofHours(1), () -> {
+            AuthService.check(session, "Admin");
+            LongConsumer progress = rows -> SwingUtilities.invokeLater(
+                () -> lblExport.setText(String.format("Exported %,d rows...", rows)));
+            return table.equals("Users") ? DataExport.users(file, format, progress)
+                : DataExport.appointments(file, format, progress);
+        }, result -> {
+            btnExport.setEnabled(true);
+            lblExport.setText("");
+            JOptionPane.showMessageDialog(this, String.format("Exported %,d rows (%,d KB) in %.1f s, %,.0f rows/s.",
+                result.rows(), result.bytes() / 1024, result.elapsedNanos() / 1e9, result.rowsPerSecond()),
+                "Export Finished", JOptionPane.INFORMATION_MESSAGE);
+        }, ex -> {
+            btnExport.setEnabled(true);
+            lblExport.setText("");
+            JOptionPane.showMessageDialog(this, "Error exporting " + table.toLowerCase() + ": " + ex.getMessage());
+        });
     }
 
     private void deleteUser() {
-        int selectedRow = table.getSelectedRow();
-        if (selectedRow == -1) {
+        User user = getSelectedUser();
+        if (user == null) {
             JOptionPane.showMessageDialog(this, "Please select a user to delete.");
             return;
         }
-        String id = (String) model.getValueAt(selectedRow, 0);
         int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete this user?", "Confirm Delete", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            try (Connection con = Database.getConnection();
-                 PreparedStatement stmt = con.prepareStatement("DELETE FROM users WHERE id=?")) {
-                stmt.setString(1, id);
-                stmt.executeUpdate();
+            AsyncDb.submit("users.delete", () -> {
+                AuthService.check(session, "Admin");
+                return Repositories.users().delete(user.id());
+            }, deleted -> {
                 loadUsers();
                 JOptionPane.showMessageDialog(this, "User deleted successfully!");
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+            }, ex -> {
                 JOptionPane.showMessageDialog(this, "Error deleting user.");
+            });
+        }
+    }
+}
+
+// Live view of this process's own counters and latency histograms (Metrics), sampled on a Swing
+// timer while the card is visible. Nothing here queries the database, so every figure is this
+// client's view: pending appointments are those it last read as pending (its teacher screens and
+// AppointmentFeed deltas) plus its requests still in the write journal.
+class DashboardPanel extends JPanel {
+    private static final int REFRESH_MILLIS = Integer.getInteger("schedule.dashboard.refreshMillis", 2000);
+
+    private final JLabel lblRequestRate = createValueLabel();
+    private final JLabel lblBookings = createValueLabel();
+    private final JLabel lblApproveLatency = createValueLabel();
+    private final JLabel lblDbLatency = createValueLabel();
+    private final JLabel lblConnectLatency = createValueLabel();
+    private final JLabel lblEdtStalls = createValueLabel();
+    private final JLabel lblPool = createValueLabel();
+    private final JLabel lblSessions = createValueLabel();
+    private final JLabel lblJournal = createValueLabel();
+    private final DefaultTableModel operationsModel = new DefaultTableModel(
+        new Object[]{"Operation", "Calls", "Errors", "p50 ms", "p99 ms", "Max ms"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final DefaultTableModel pendingModel = new DefaultTableModel(
+        new Object[]{"Teacher ID", "Pending (seen here)"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final Timer timer = new Timer(REFRESH_MILLIS, e -> refresh());
+    private long lastRequests = -1;
+    private long lastSampleNanos;
+
+    public DashboardPanel() {
+        setLayout(new BorderLayout(10, 10));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JLabel title = new JLabel("Admin Dashboard", SwingConstants.CENTER);
+        title.setFont(new Font("Arial", Font.BOLD, 18));
+        JLabel scope = new JLabel("This client's view: figures cover what this process has sent and read, "
+            + "not every client", SwingConstants.CENTER);
+        scope.setFont(new Font("Arial", Font.ITALIC, 12));
+
+        JPanel summary = new JPanel(new GridLayout(3, 3, 10, 10));
+        summary.add(createTile("Requests / min", lblRequestRate));
+        summary.add(createTile("Booked / conflicts", lblBookings));
+        summary.add(createTile("Approve/decline p50 / p99", lblApproveLatency));
+        summary.add(createTile("DB round trip p50 / p99", lblDbLatency));
+        summary.add(createTile("Connect p50 / p99", lblConnectLatency));
+        summary.add(createTile("UI stalls", lblEdtStalls));
+        summary.add(createTile("Pool active / idle / waiting", lblPool));
+        summary.add(createTile("Signed-in sessions", lblSessions));
+        summary.add(createTile("Journaled writes waiting", lblJournal));
+
+        JPanel north = new JPanel(new BorderLayout(10, 10));
+        JPanel heading = new JPanel(new GridLayout(2, 1));
+        heading.add(title);
+        heading.add(scope);
+        north.add(heading, BorderLayout.NORTH);
+        north.add(summary, BorderLayout.CENTER);
+        add(north, BorderLayout.NORTH);
+
+        JSplitPane tables = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
+            new JScrollPane(new JTable(operationsModel)), new JScrollPane(new JTable(pendingModel)));
+        tables.setResizeWeight(0.75);
+        add(tables, BorderLayout.CENTER);
+
+        // Sample only while the dashboard is on screen
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+                if (isShowing()) {
+                    refresh();
+                    timer.start();
+                } else {
+                    timer.stop();
+                }
             }
+        });
+    }
+
+    private void refresh() {
+        Map<String, Long> counters = Metrics.counters();
+        Map<String, LatencyHistogram.Snapshot> histograms = Metrics.snapshot();
+
+        long requests = counters.getOrDefault("booking.requests", 0L);
+        long now = System.nanoTime();
+        if (lastRequests >= 0) {
+            double minutes = (now - lastSampleNanos) / 60e9;
+            lblRequestRate.setText(String.format("%.1f", (requests - lastRequests) / minutes));
+        } else {
+            lblRequestRate.setText("-");
+        }
+        lastRequests = requests;
+        lastSampleNanos = now;
+
+        lblBookings.setText(counters.getOrDefault("booking.booked", 0L) + " / "
+            + counters.getOrDefault("booking.conflicts", 0L));
+        lblApproveLatency.setText(percentiles(histograms.get("appointments.setStatus")));
+        lblDbLatency.setText(percentiles(histograms.get("db.execute")));
+        lblConnectLatency.setText(percentiles(histograms.get("db.connect")));
+        LatencyHistogram.Snapshot stalls = histograms.get("edt.stall");
+        lblEdtStalls.setText(stalls == null ? "0" : String.format("%d (max %.0f ms)", stalls.count(), stalls.maxMillis()));
+        // The pool only exists with MySQL storage; don't create one just to report on it
+        ConnectionPool.Stats pool = Repositories.memoryStore() == null ? Database.poolStats() : null;
+        lblPool.setText(pool == null ? "-" : pool.active() + " / " + pool.idle() + " / " + pool.waiting());
+        lblSessions.setText(String.valueOf(AuthService.activeSessions()));
+        WriteJournal journal = Repositories.journal();
+        lblJournal.setText(journal == null ? "-" : String.valueOf(journal.backlog()));
+
+        operationsModel.setRowCount(0);
+        histograms.forEach((name, h) -> operationsModel.addRow(new Object[]{name, h.count(), h.errors(),
+            String.format("%.2f", h.p50Millis()), String.format("%.2f", h.p99Millis()), String.format("%.2f", h.maxMillis())}));
+
+        Map<Integer, Long> pending = Metrics.pendingByTeacher();
+        if (journal != null) {
+            journal.backlogByTeacher().forEach((teacherId, count) -> pending.merge(teacherId, count, Long::sum));
         }
+        pendingModel.setRowCount(0);
+        pending.entrySet().stream()
+            .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
+            .forEach(entry -> pendingModel.addRow(new Object[]{entry.getKey(), entry.getValue()}));
+    }
+
+    private static String percentiles(LatencyHistogram.Snapshot snapshot) {
+        return snapshot == null || snapshot.count() == 0 ? "-"
+            : String.format("%.1f / %.1f ms", snapshot.p50Millis(), snapshot.p99Millis());
+    }
+
+    private static JLabel createValueLabel() {
+        JLabel label = new JLabel("-", SwingConstants.CENTER);
+        label.setFont(new Font("Arial", Font.BOLD, 16));
+        return label;
+    }
+
+    private static JPanel createTile(String caption, JLabel value) {
+        JPanel tile = new JPanel(new BorderLayout());
+        tile.setBackground(Color.WHITE);
+        tile.setBorder(BorderFactory.createLineBorder(Color.decode("#0077B6")));
+        JLabel label = new JLabel(caption, SwingConstants.CENTER);
+        label.setFont(new Font("Arial", Font.PLAIN, 12));
+        tile.add(label, BorderLayout.NORTH);
+        tile.add(value, BorderLayout.CENTER);
+        return tile;
     }
 }
@@ -0,0 +1,8 @@
+import java.sql.Timestamp;
+
+// teacherName/studentName are only filled in when the query joins the matching table.
+// slot is null for legacy rows whose time was never parsed. version goes up by one with every
+// status change.
+public record Appointment(int id, int teacherId, int studentId, String teacherName, String studentName,
+                          String time, TimeSlot slot, String status, Timestamp updatedAt, int version) {
+}
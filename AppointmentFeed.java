@@ -0,0 +1,155 @@
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+
+// One poller per process that watches for appointment changes and pushes them to subscribed
+// panels on the EDT, so any number of open tables cost one query per interval
+// (-Dschedule.feed.pollMillis, default 3000). It runs only while something is subscribed.
+//
+// Like the panels' own delta loads, each poll re-reads a few seconds before its watermark to
+// catch rows committed out of timestamp order; rows already delivered are not sent again.
+public final class AppointmentFeed {
+    private static final Logger LOG = Logger.getLogger(AppointmentFeed.class.getName());
+    private static final long POLL_MILLIS = Long.getLong("schedule.feed.pollMillis", 3000);
+    private static final long OVERLAP_MILLIS = 5_000;
+
+    private static final Map<Integer, List<Consumer<List<Appointment>>>> BY_TEACHER = new ConcurrentHashMap<>();
+    private static final Map<Integer, List<Consumer<List<Appointment>>>> BY_STUDENT = new ConcurrentHashMap<>();
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static final ScheduledExecutorService POLLER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "appointment-feed");
+        t.setDaemon(true);
+        return t;
+    });
+    private static ScheduledFuture<?> polling; // guarded by LOCK
+    private static int subscribers;            // guarded by LOCK
+
+    // Only touched by the poller thread
+    private static Timestamp watermark;
+    private static final Map<Integer, Timestamp> delivered = new HashMap<>();
+
+    private AppointmentFeed() {
+    }
+
+    @FunctionalInterface
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // Changes to the teacher's appointments, with studentName filled in
+    public static Subscription forTeacher(int teacherId, Consumer<List<Appointment>> listener) {
+        return subscribe(BY_TEACHER, teacherId, listener);
+    }
+
+    // Changes to the student's appointments, with teacherName filled in
+    public static Subscription forStudent(int studentId, Consumer<List<Appointment>> listener) {
+        return subscribe(BY_STUDENT, studentId, listener);
+    }
+
+    private static Subscription subscribe(Map<Integer, List<Consumer<List<Appointment>>>> index, int id,
+                                          Consumer<List<Appointment>> listener) {
+        index.computeIfAbsent(id, k -> new CopyOnWriteArrayList<>()).add(listener);
+        LOCK.lock();
+        try {
+            if (subscribers++ == 0) {
+                polling = POLLER.scheduleWithFixedDelay(AppointmentFeed::poll, 0, POLL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            LOCK.unlock();
+        }
+        return () -> {
+            List<Consumer<List<Appointment>>> listeners = index.get(id);
+            if (listeners == null || !listeners.remove(listener)) {
+                return;
+            }
+            LOCK.lock();
+            try {
+                if (--subscribers == 0) {
+                    polling.cancel(false);
+                    polling = null;
+                }
+            } finally {
+                LOCK.unlock();
+            }
+        };
+    }
+
+    private static void poll() {
+        Metrics.setCurrentOperation("feed.poll");
+        long started = System.nanoTime();
+        try {
+            AppointmentRepository appointments = Repositories.appointments();
+            if (watermark == null) {
+                // Subscribers load their own history; the feed only reports what changes after it starts
+                Timestamp latest = appointments.latestChange();
+                watermark = latest != null ? latest : new Timestamp(0);
+            }
+            List<Appointment> changes = appointments.changesSince(new Timestamp(watermark.getTime() - OVERLAP_MILLIS));
+            Metrics.observeAppointments(changes);
+            Map<Integer, List<Appointment>> forTeachers = new HashMap<>();
+            Map<Integer, List<Appointment>> forStudents = new HashMap<>();
+            for (Appointment a : changes) {
+                if (a.updatedAt().after(watermark)) {
+                    watermark = a.updatedAt();
+                }
+                if (a.updatedAt().equals(delivered.put(a.id(), a.updatedAt()))) {
+                    continue;
+                }
+                if (BY_TEACHER.containsKey(a.teacherId())) {
+                    forTeachers.computeIfAbsent(a.teacherId(), k -> new ArrayList<>()).add(new Appointment(a.id(),
+                        a.teacherId(), a.studentId(), null, a.studentName(), a.time(), a.slot(), a.status(), a.updatedAt(),
+                        a.version()));
+                }
+                if (BY_STUDENT.containsKey(a.studentId())) {
+                    forStudents.computeIfAbsent(a.studentId(), k -> new ArrayList<>()).add(new Appointment(a.id(),
+                        a.teacherId(), a.studentId(), a.teacherName(), null, a.time(), a.slot(), a.status(), a.updatedAt(),
+                        a.version()));
+                }
+            }
+            forgetOutsideOverlap();
+            dispatch(BY_TEACHER, forTeachers);
+            dispatch(BY_STUDENT, forStudents);
+            Metrics.record("feed.poll", System.nanoTime() - started);
+        } catch (Exception ex) {
+            Metrics.recordError("feed.poll");
+            LOG.log(Level.WARNING, "Appointment feed poll failed", ex);
+        } finally {
+            Metrics.setCurrentOperation(null);
+        }
+    }
+
+    // Rows older than the overlap window are never re-read, so they need no de-duplication
+    private static void forgetOutsideOverlap() {
+        long cutoff = watermark.getTime() - OVERLAP_MILLIS;
+        for (Iterator<Timestamp> it = delivered.values().iterator(); it.hasNext(); ) {
+            if (it.next().getTime() < cutoff) {
+                it.remove();
+            }
+        }
+    }
+
+    private static void dispatch(Map<Integer, List<Consumer<List<Appointment>>>> index,
+                                 Map<Integer, List<Appointment>> changesById) {
+        changesById.forEach((id, changes) -> {
+            List<Appointment> batch = List.copyOf(changes);
+            for (Consumer<List<Appointment>> listener : index.getOrDefault(id, List.of())) {
+                SwingUtilities.invokeLater(() -> listener.accept(batch));
+            }
+        });
+    }
+}
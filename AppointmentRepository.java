@@ -0,0 +1,61 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface AppointmentRepository {
+    // Appointments of the teacher with updated_at >= since (all of them when since is null),
+    // with studentName filled in
+    List<Appointment> changesForTeacher(int teacherId, Timestamp since) throws SQLException;
+
+    // Same for a student, with teacherName filled in
+    List<Appointment> changesForStudent(int studentId, Timestamp since) throws SQLException;
+
+    // Appointments of the teacher starting in [from, to), in start order, with studentName filled in.
+    // Rows whose time never parsed (start_at NULL) are left out.
+    List<Appointment> findForTeacherBetween(int teacherId, LocalDateTime from, LocalDateTime to) throws SQLException;
+
+    // Same for a student, with teacherName filled in
+    List<Appointment> findForStudentBetween(int studentId, LocalDateTime from, LocalDateTime to) throws SQLException;
+
+    // Every appointment with updated_at >= since, with both names filled in; feeds AppointmentFeed
+    List<Appointment> changesSince(Timestamp since) throws SQLException;
+
+    // Newest updated_at of any appointment, or null when there are none
+    Timestamp latestChange() throws SQLException;
+
+    // Every appointment in id order with both names filled in (null where the teacher or student
+    // is gone), one at a time and without holding them all in memory; for DataExport
+    void streamAppointments(DataExport.RowSink<Appointment> sink) throws SQLException, IOException;
+
+    // Sets the status of those of the ids that belong to the teacher, atomically, each only if it is
+    // still at versions[i] (as last read); updated rows go up one version. A row already in that
+    // status is left as it is and counts as done. Returns the ids left alone because they changed
+    // since, are gone or are not the teacher's. versions is null only for status changes journaled
+    // before rows had versions, which set the status unconditionally and return no ids.
+    int[] updateStatus(int teacherId, int[] appointmentIds, int[] versions, String status) throws SQLException;
+
+    // Pending and approved slots of the teacher that end after the given time
+    List<TimeSlot> bookedSlots(int teacherId, LocalDateTime endingAfter) throws SQLException;
+
+    // Pending and approved slots of each of the teachers that overlap [from, to); teachers with
+    // none are left out of the map
+    Map<Integer, List<TimeSlot>> bookedSlots(Collection<Integer> teacherIds, LocalDateTime from, LocalDateTime to)
+        throws SQLException;
+
+    // Pending and approved slots of the student that overlap [from, to)
+    List<TimeSlot> studentBookedSlots(int studentId, LocalDateTime from, LocalDateTime to) throws SQLException;
+
+    // Inserts a pending request unless it overlaps a pending or approved one of the same
+    // teacher; the check and the insert are atomic. Returns false on overlap.
+    boolean insertIfFree(int studentId, int teacherId, TimeSlot slot) throws SQLException;
+
+    // Applies WriteJournal entries in order, in one transaction. A request whose key is already
+    // stored counts as applied. Element i is false only when write i is a request rejected because
+    // it overlaps a pending or approved booking of the teacher, or a status change of which some
+    // appointment was left alone as updateStatus describes.
+    boolean[] applyWrites(List<JournalWrite> writes) throws SQLException;
+}
@@ -0,0 +1,106 @@
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.swing.table.AbstractTableModel;
+
+// Appointment list that is patched in place from change sets instead of being rebuilt.
+// Callers fetch rows with updated_at >= changesSince() and hand them to applyChanges().
+public class AppointmentTableModel extends AbstractTableModel {
+    // Rows committed slightly out of timestamp order are caught by re-reading this window
+    private static final long OVERLAP_MILLIS = 5_000;
+
+    private final String[] columns;
+    private final Function<Appointment, String> nameOf;
+    private final List<Appointment> rows = new ArrayList<>();
+    private final Map<Integer, Integer> rowById = new HashMap<>();
+    private Timestamp watermark;
+
+    public AppointmentTableModel(Function<Appointment, String> nameOf, String... columns) {
+        this.nameOf = nameOf;
+        this.columns = columns;
+    }
+
+    // Null until the first load, meaning "fetch everything"
+    public Timestamp changesSince() {
+        return watermark == null ? null : new Timestamp(watermark.getTime() - OVERLAP_MILLIS);
+    }
+
+    public void applyChanges(List<Appointment> changes) {
+        int firstInserted = rows.size();
+        int updated = 0;
+        int lastUpdatedRow = -1;
+        for (Appointment appointment : changes) {
+            if (watermark == null || appointment.updatedAt().after(watermark)) {
+                watermark = appointment.updatedAt();
+            }
+            Integer row = rowById.get(appointment.id());
+            if (row == null) {
+                rowById.put(appointment.id(), rows.size());
+                rows.add(appointment);
+            } else if (!rows.get(row).equals(appointment)) {
+                rows.set(row, appointment);
+                updated++;
+                lastUpdatedRow = row;
+            }
+        }
+        if (watermark == null) {
+            // Nothing exists yet; start tracking from the epoch so the next refresh is a delta
+            watermark = new Timestamp(0);
+        }
+
+        if (updated > 1) {
+            fireTableRowsUpdated(0, firstInserted - 1);
+        } else if (updated == 1) {
+            fireTableRowsUpdated(lastUpdatedRow, lastUpdatedRow);
+        }
+        if (rows.size() > firstInserted) {
+            fireTableRowsInserted(firstInserted, rows.size() - 1);
+        }
+    }
+
+    public void clear() {
+        rows.clear();
+        rowById.clear();
+        watermark = null;
+        fireTableDataChanged();
+    }
+
+    public Appointment getAppointmentAt(int row) {
+        return rows.get(row);
+    }
+
+    // Null when the appointment is not in the table
+    public Appointment getAppointment(int id) {
+        Integer row = rowById.get(id);
+        return row == null ? null : rows.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Appointment appointment = rows.get(row);
+        switch (column) {
+            case 0: return nameOf.apply(appointment);
+            case 1: return appointment.time();
+            case 2: return appointment.status();
+            default: return null;
+        }
+    }
+}
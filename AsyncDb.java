@@ -0,0 +1,134 @@
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+
+// Runs database work off the event dispatch thread, one virtual thread per call, and hands
+// the outcome back on the EDT. Each call ends exactly once: success, failure, timeout or
+// cancellation. Cancelled calls never reach their callbacks.
+//
+// A timeout does not interrupt the work: interrupting a thread inside a JDBC call can leave a
+// write half-applied or its outcome unreported. The caller is told the outcome is unknown and
+// the work runs to the end on its own; a late finish is only logged.
+//
+// Every call is named. Metrics keeps a latency histogram per name for the work itself and one
+// for the success callback on the EDT (name + ".ui"); failures are counted and logged.
+public final class AsyncDb {
+    private static final Logger LOG = Logger.getLogger(AsyncDb.class.getName());
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(Long.getLong("schedule.db.timeoutSeconds", 30));
+
+    private static final ExecutorService EXECUTOR = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("db-", 0).factory());
+    private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "db-timeouts");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private AsyncDb() {
+    }
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T call() throws Exception;
+    }
+
+    public static <T> Task submit(String operation, Work<T> work, Consumer<? super T> onSuccess,
+                                  Consumer<? super Exception> onFailure) {
+        return submit(operation, DEFAULT_TIMEOUT, work, onSuccess, onFailure);
+    }
+
+    public static <T> Task submit(String operation, Duration timeout, Work<T> work, Consumer<? super T> onSuccess,
+                                  Consumer<? super Exception> onFailure) {
+        Task task = new Task();
+        task.future = EXECUTOR.submit(() -> {
+            Metrics.setCurrentOperation(operation);
+            long started = System.nanoTime();
+            try {
+                T result = work.call();
+                Metrics.record(operation, System.nanoTime() - started);
+                if (task.state.get() == Task.TIMED_OUT) {
+                    LOG.info("Database operation " + operation + " completed after its timeout");
+                }
+                SwingUtilities.invokeLater(() -> {
+                    if (task.complete()) {
+                        long uiStarted = System.nanoTime();
+                        onSuccess.accept(result);
+                        Metrics.record(operation + ".ui", System.nanoTime() - uiStarted);
+                    }
+                });
+            } catch (Exception ex) {
+                if (task.isRunning()) {
+                    Metrics.recordError(operation);
+                    LOG.log(Level.WARNING, "Database operation " + operation + " failed", ex);
+                }
+                SwingUtilities.invokeLater(() -> {
+                    if (task.complete()) {
+                        onFailure.accept(ex);
+                    }
+                });
+            } finally {
+                Metrics.setCurrentOperation(null);
+            }
+        });
+        task.timeout = TIMEOUTS.schedule(() -> {
+            if (task.state.compareAndSet(Task.RUNNING, Task.TIMED_OUT)) {
+                task.future.cancel(false);
+                Metrics.recordError(operation);
+                LOG.warning("Database operation " + operation + " still running after " + timeout.toSeconds() + " s");
+                SwingUtilities.invokeLater(() -> onFailure.accept(new TimeoutException(
+                    "Database call still running after " + timeout.toSeconds() + " s; it may yet complete")));
+            }
+        }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+        return task;
+    }
+
+    public static final class Task {
+        private static final int RUNNING = 0;
+        private static final int COMPLETED = 1;
+        private static final int CANCELLED = 2;
+        private static final int TIMED_OUT = 3;
+
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+        private volatile Future<?> future;
+        private volatile ScheduledFuture<?> timeout;
+
+        // Interrupts the worker; a virtual thread blocked on the database socket is released and
+        // the pool drops its connection. Only for reads: a cancelled write may or may not be applied
+        public void cancel() {
+            if (state.compareAndSet(RUNNING, CANCELLED)) {
+                future.cancel(true);
+                cancelTimeout();
+            }
+        }
+
+        public boolean isRunning() {
+            return state.get() == RUNNING;
+        }
+
+        private boolean complete() {
+            if (state.compareAndSet(RUNNING, COMPLETED)) {
+                cancelTimeout();
+                return true;
+            }
+            return false;
+        }
+
+        private void cancelTimeout() {
+            ScheduledFuture<?> pending = timeout;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Signs users in and keeps their sessions in memory. Password hashing runs on a small fixed pool
+// with a bounded queue, so a burst of logins queues (or is turned away) instead of taking every
+// core from the UI. Once signed in, callers check the session token rather than the users table.
+public final class AuthService {
+    private static final int HASH_THREADS = Integer.getInteger("schedule.auth.hashThreads",
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int HASH_QUEUE = Integer.getInteger("schedule.auth.hashQueue", 64);
+    private static final long SESSION_IDLE_NANOS = Duration.ofMinutes(
+        Long.getLong("schedule.auth.sessionIdleMinutes", 480)).toNanos();
+    private static final long SWEEP_INTERVAL_NANOS = Duration.ofMinutes(1).toNanos();
+
+    private static final ThreadPoolExecutor HASHING = new ThreadPoolExecutor(HASH_THREADS, HASH_THREADS,
+        0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(HASH_QUEUE), new HashThreadFactory());
+    private static final Map<String, Entry> SESSIONS = new ConcurrentHashMap<>();
+    private static final AtomicLong LAST_SWEEP = new AtomicLong(System.nanoTime());
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private AuthService() {
+    }
+
+    // Null when the name, password and role don't match a user. Throws RejectedExecutionException
+    // when too many logins are already waiting to be verified.
+    public static Session login(String name, String password, String role) throws SQLException, InterruptedException {
+        UserRepository.Credentials credentials = Repositories.users().findCredentials(name, role);
+        if (credentials == null) {
+            // Spend the same time as a real check so unknown names can't be told apart by timing
+            onHashPool(() -> PasswordHasher.verify(password, DummyHash.VALUE));
+            return null;
+        }
+
+        String hash = credentials.passwordHash();
+        boolean valid = hash != null
+            ? onHashPool(() -> PasswordHasher.verify(password, hash))
+            : credentials.legacyPassword() != null && MessageDigest.isEqual(
+                credentials.legacyPassword().getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+        if (!valid) {
+            return null;
+        }
+        if (hash == null || PasswordHasher.needsRehash(hash)) {
+            Repositories.users().setPasswordHash(credentials.id(), onHashPool(() -> PasswordHasher.hash(password)));
+        }
+        return openSession(credentials.id(), role);
+    }
+
+    // Throws SecurityException unless the session is still signed in
+    public static void check(Session session) {
+        Entry entry = SESSIONS.get(session.token());
+        long now = System.nanoTime();
+        if (entry == null || !entry.session.equals(session) || now - entry.lastSeen > SESSION_IDLE_NANOS) {
+            SESSIONS.remove(session.token());
+            throw new SecurityException("Your session has expired. Please log in again.");
+        }
+        entry.lastSeen = now;
+    }
+
+    // The signed-in session with this token, for callers that only hold the token (ScheduleServer's
+    // bearer tokens); throws SecurityException like check when there is none
+    public static Session resume(String token) {
+        Entry entry = token == null ? null : SESSIONS.get(token);
+        if (entry == null) {
+            throw new SecurityException("Your session has expired. Please log in again.");
+        }
+        check(entry.session);
+        return entry.session;
+    }
+
+    // As check(session), and also requires the session to belong to the given role
+    public static void check(Session session, String role) {
+        check(session);
+        if (!session.role().equals(role)) {
+            throw new SecurityException("Only " + role + " users can do this.");
+        }
+    }
+
+    // Hashes a password for a new account on the same bounded pool as logins
+    public static String hashPassword(String password) throws InterruptedException {
+        return onHashPool(() -> PasswordHasher.hash(password));
+    }
+
+    public static void logout(Session session) {
+        SESSIONS.remove(session.token());
+    }
+
+    public static int activeSessions() {
+        return SESSIONS.size();
+    }
+
+    private static Session openSession(int userId, String role) {
+        sweepExpired();
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        Session session = new Session(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes), userId, role);
+        SESSIONS.put(session.token(), new Entry(session, System.nanoTime()));
+        return session;
+    }
+
+    private static void sweepExpired() {
+        long now = System.nanoTime();
+        long last = LAST_SWEEP.get();
+        if (now - last > SWEEP_INTERVAL_NANOS && LAST_SWEEP.compareAndSet(last, now)) {
+            SESSIONS.values().removeIf(entry -> now - entry.lastSeen > SESSION_IDLE_NANOS);
+        }
+    }
+
+    private static <T> T onHashPool(Callable<T> work) throws InterruptedException {
+        Future<T> future;
+        try {
+            future = HASHING.submit(work);
+        } catch (RejectedExecutionException ex) {
+            throw new RejectedExecutionException("Too many logins in progress. Please try again in a moment.", ex);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            throw ex;
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Password check failed", ex.getCause());
+        }
+    }
+
+    private static final class Entry {
+        final Session session;
+        volatile long lastSeen;
+
+        Entry(Session session, long lastSeen) {
+            this.session = session;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    private static final class DummyHash {
+        static final String VALUE = PasswordHasher.hash("not a real password");
+    }
+
+    private static final class HashThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "auth-hash-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Books appointment slots without double-booking a teacher. Each teacher's upcoming busy
+// time is kept in an IntervalIndex for fast checks and free-slot suggestions; the insert
+// itself is an atomic check-and-insert in the repository, so concurrent clients cannot both
+// win a slot.
+//
+// With a WriteJournal open, a request the index shows as free is journaled and reported as booked
+// without waiting for the database, and the journal makes the atomic check when it applies it. If
+// the busy times cannot be loaded because the database is down, the request is journaled anyway.
+public class BookingService {
+    private static final Map<Integer, TeacherSlots> SLOTS = new ConcurrentHashMap<>();
+
+    public record Result(boolean booked, TimeSlot suggestion) {
+    }
+
+    public static Result request(int studentId, int teacherId, TimeSlot slot) throws SQLException, IOException {
+        Metrics.count("booking.requests");
+        WriteJournal journal = Repositories.journal();
+        TeacherSlots slots = SLOTS.computeIfAbsent(teacherId, id -> new TeacherSlots());
+        slots.lock.lock();
+        try {
+            IntervalIndex index = slots.index;
+            long start = slot.startMinute();
+            long end = slot.endMinute();
+            if (!slots.loaded || index.overlaps(start, end)) {
+                // A hit may be stale if that booking was declined since we loaded
+                try {
+                    reload(teacherId, slots);
+                } catch (SQLException ex) {
+                    if (journal == null) {
+                        throw ex;
+                    }
+                    // The journal checks for overlaps once the database is back
+                }
+                if (index.overlaps(start, end)) {
+                    return conflict(index, slot);
+                }
+            }
+
+            if (journal != null) {
+                journal.requestAppointment(studentId, teacherId, slot);
+            } else if (!Repositories.appointments().insertIfFree(studentId, teacherId, slot)) {
+                // Another client booked it; pick up their bookings before suggesting
+                reload(teacherId, slots);
+                return conflict(index, slot);
+            }
+            index.add(start, end);
+            Metrics.count("booking.booked");
+            return new Result(true, null);
+        } finally {
+            slots.lock.unlock();
+        }
+    }
+
+    // Call when a booking is declined so its slot becomes free again
+    public static void invalidate(int teacherId) {
+        TeacherSlots slots = SLOTS.get(teacherId);
+        if (slots != null) {
+            slots.lock.lock();
+            try {
+                slots.loaded = false;
+            } finally {
+                slots.lock.unlock();
+            }
+        }
+    }
+
+    private static Result conflict(IntervalIndex index, TimeSlot slot) {
+        Metrics.count("booking.conflicts");
+        long length = slot.endMinute() - slot.startMinute();
+        long now = TimeSlot.toMinute(LocalDateTime.now());
+        long free = index.nearestFree(slot.startMinute(), length, now);
+        return new Result(false, TimeSlot.ofMinutes(free, free + length));
+    }
+
+    private static void reload(int teacherId, TeacherSlots slots) throws SQLException {
+        IntervalIndex index = slots.index;
+        index.clear();
+        slots.loaded = false;
+        for (TimeSlot booked : Repositories.appointments().bookedSlots(teacherId, LocalDateTime.now())) {
+            index.add(booked.startMinute(), booked.endMinute());
+        }
+        slots.loaded = true;
+    }
+
+    // A ReentrantLock rather than synchronized so virtual threads waiting on JDBC don't pin their carrier
+    private static class TeacherSlots {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final IntervalIndex index = new IntervalIndex();
+        private boolean loaded;
+    }
+}
@@ -0,0 +1,468 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Bounded JDBC connection pool. Connections handed out are proxies: close() returns the
+// physical connection to the pool, and prepareStatement(sql) is served from a small
+// per-connection statement cache. Settings a borrower changes on the connection (auto-commit,
+// isolation, read-only, catalog) or on a cached statement (fetch size, timeouts, row limits) are
+// put back before the next borrower gets them.
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(ConnectionPool.class.getName());
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long validateAfterIdleMillis;
+    private final long leakThresholdMillis;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>(); // guarded by itself, most recently used first
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String password, int maxSize, long maxWaitMillis,
+                          long validateAfterIdleMillis, long leakThresholdMillis, int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.validateAfterIdleMillis = validateAfterIdleMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, leakThresholdMillis > 0 ? leakThresholdMillis / 2 : 30_000);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTransientConnectionException(
+                    "Timed out after " + maxWaitMillis + " ms waiting for a connection (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", ex);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pc = takeValidIdle();
+            if (pc == null) {
+                Connection physical = DriverManager.getConnection(url, user, password);
+                try {
+                    pc = new PooledConnection(physical);
+                } catch (SQLException | RuntimeException ex) {
+                    physical.close();
+                    throw ex;
+                }
+                created.incrementAndGet();
+            }
+            pc.borrowedAt = System.currentTimeMillis();
+            pc.borrowSite = leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+            pc.leakReported = false;
+            borrowed.add(pc);
+            borrows.incrementAndGet();
+            return pc.newHandle();
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    public Stats stats() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
+        }
+        long count = borrows.get();
+        return new Stats(borrowed.size(), idleCount, maxSize, permits.getQueueLength(), created.get(), count,
+            timeouts.get(), count == 0 ? 0 : totalWaitNanos.get() / 1e6 / count, maxWaitNanos.get() / 1e6);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        synchronized (idle) {
+            idle.forEach(PooledConnection::destroy);
+            idle.clear();
+        }
+    }
+
+    private PooledConnection takeValidIdle() {
+        while (true) {
+            PooledConnection pc;
+            synchronized (idle) {
+                pc = idle.pollFirst();
+            }
+            if (pc == null) {
+                return null;
+            }
+            if (isUsable(pc)) {
+                return pc;
+            }
+            pc.destroy();
+        }
+    }
+
+    // Connections idle for longer than the threshold are pinged before being handed out
+    private boolean isUsable(PooledConnection pc) {
+        try {
+            if (pc.physical.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - pc.returnedAt < validateAfterIdleMillis) {
+                return true;
+            }
+            return pc.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        borrowed.remove(pc);
+        try {
+            // An interrupt may have cut a driver call short and left the protocol mid-exchange
+            boolean reusable = !closed && !Thread.currentThread().isInterrupted() && !pc.physical.isClosed();
+            if (reusable) {
+                pc.reset();
+            }
+            if (reusable) {
+                pc.returnedAt = System.currentTimeMillis();
+                synchronized (idle) {
+                    idle.addFirst(pc);
+                }
+            } else {
+                pc.destroy();
+            }
+        } catch (SQLException ex) {
+            LOG.log(Level.FINE, "Discarding connection that failed to reset", ex);
+            pc.destroy();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        if (leakThresholdMillis > 0) {
+            for (PooledConnection pc : borrowed) {
+                if (!pc.leakReported && now - pc.borrowedAt > leakThresholdMillis) {
+                    pc.leakReported = true;
+                    LOG.log(Level.WARNING, "Connection held for " + (now - pc.borrowedAt)
+                        + " ms without being closed; possible leak", pc.borrowSite);
+                }
+            }
+        }
+        synchronized (idle) {
+            // Oldest idle connections sit at the tail
+            for (Iterator<PooledConnection> it = idle.descendingIterator(); it.hasNext(); ) {
+                PooledConnection pc = it.next();
+                if (now - pc.returnedAt < IDLE_TIMEOUT_MILLIS) {
+                    break;
+                }
+                it.remove();
+                pc.destroy();
+            }
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    public record Stats(int active, int idle, int maxSize, int waiting, long created, long borrows,
+                        long timeouts, double avgWaitMillis, double maxWaitMillis) {
+        @Override
+        public String toString() {
+            return String.format("active=%d idle=%d max=%d waiting=%d created=%d borrows=%d timeouts=%d avgWait=%.2fms maxWait=%.2fms",
+                active, idle, maxSize, waiting, created, borrows, timeouts, avgWaitMillis, maxWaitMillis);
+        }
+    }
+
+    private final class PooledConnection {
+        private final Connection physical;
+        private final Map<String, CachedStatement> statements;
+        private final int defaultIsolation;
+        private final String defaultCatalog;
+        private volatile long borrowedAt;
+        private volatile long returnedAt = System.currentTimeMillis();
+        private volatile Throwable borrowSite;
+        private volatile boolean leakReported;
+        private boolean settingsChanged; // by the current borrower, through Handle
+
+        PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.defaultIsolation = physical.getTransactionIsolation();
+            this.defaultCatalog = physical.getCatalog();
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() <= statementCacheSize) {
+                        return false;
+                    }
+                    eldest.getValue().evict();
+                    return true;
+                }
+            };
+        }
+
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Handle(this));
+        }
+
+        PreparedStatement prepare(Connection handle, String sql) throws SQLException {
+            if (statementCacheSize <= 0) {
+                return physical.prepareStatement(sql);
+            }
+            CachedStatement cached = statements.get(sql);
+            if (cached == null) {
+                PreparedStatement statement = physical.prepareStatement(sql);
+                try {
+                    cached = new CachedStatement(statement);
+                } catch (SQLException | RuntimeException ex) {
+                    statement.close();
+                    throw ex;
+                }
+                statements.put(sql, cached);
+            } else if (cached.inUse) {
+                // Same SQL already open on this borrow; fall back to a throwaway statement
+                return physical.prepareStatement(sql);
+            }
+            return cached.checkout(handle);
+        }
+
+        // Ends any open transaction and restores what the borrower changed; throws if the
+        // connection cannot be brought back, and release then discards it
+        void reset() throws SQLException {
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (settingsChanged) {
+                settingsChanged = false;
+                physical.setReadOnly(false);
+                physical.setTransactionIsolation(defaultIsolation);
+                if (defaultCatalog != null) {
+                    physical.setCatalog(defaultCatalog);
+                }
+            }
+        }
+
+        void destroy() {
+            statements.values().forEach(CachedStatement::evict);
+            statements.clear();
+            try {
+                physical.close();
+            } catch (SQLException ex) {
+                LOG.log(Level.FINE, "Error closing pooled connection", ex);
+            }
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean closed;
+
+        Handle(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pc);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pc.physical;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+            switch (method.getName()) {
+                case "prepareStatement":
+                    if (args.length == 1) {
+                        return pc.prepare((Connection) proxy, (String) args[0]);
+                    }
+                    break;
+                case "setReadOnly", "setTransactionIsolation", "setCatalog", "setSchema":
+                    pc.settingsChanged = true;
+                    break;
+                default:
+                    break;
+            }
+            return ConnectionPool.invoke(pc.physical, method, args);
+        }
+    }
+
+    private static final class CachedStatement {
+        private static final Set<String> SETTINGS = Set.of("setFetchSize", "setFetchDirection", "setQueryTimeout",
+            "setMaxRows", "setLargeMaxRows", "setMaxFieldSize", "setEscapeProcessing", "setPoolable");
+
+        private final PreparedStatement physical;
+        private final int defaultFetchSize;
+        private final int defaultFetchDirection;
+        private final int defaultQueryTimeout;
+        private final long defaultMaxRows;
+        private final int defaultMaxFieldSize;
+        private boolean inUse;
+        private boolean evicted;
+        private boolean settingsChanged;
+
+        CachedStatement(PreparedStatement physical) throws SQLException {
+            this.physical = physical;
+            this.defaultFetchSize = physical.getFetchSize();
+            this.defaultFetchDirection = physical.getFetchDirection();
+            this.defaultQueryTimeout = physical.getQueryTimeout();
+            this.defaultMaxRows = physical.getLargeMaxRows();
+            this.defaultMaxFieldSize = physical.getMaxFieldSize();
+        }
+
+        // Settings are put back when the statement is handed out again rather than on close, so
+        // statements that are never changed cost nothing
+        PreparedStatement checkout(Connection handle) throws SQLException {
+            if (settingsChanged) {
+                physical.setFetchSize(defaultFetchSize);
+                physical.setFetchDirection(defaultFetchDirection);
+                physical.setQueryTimeout(defaultQueryTimeout);
+                physical.setLargeMaxRows(defaultMaxRows);
+                physical.setMaxFieldSize(defaultMaxFieldSize);
+                physical.setEscapeProcessing(true);
+                physical.setPoolable(true);
+                settingsChanged = false;
+            }
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+                    private boolean closed;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        switch (method.getName()) {
+                            case "close":
+                                if (!closed) {
+                                    closed = true;
+                                    checkin();
+                                }
+                                return null;
+                            case "isClosed":
+                                return closed;
+                            case "getConnection":
+                                return handle;
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                break;
+                        }
+                        if (closed) {
+                            throw new SQLException("Statement is closed");
+                        }
+                        if (SETTINGS.contains(method.getName())) {
+                            settingsChanged = true;
+                        }
+                        return ConnectionPool.invoke(physical, method, args);
+                    }
+                });
+        }
+
+        private void checkin() throws SQLException {
+            inUse = false;
+            if (evicted) {
+                physical.close();
+                return;
+            }
+            ResultSet open = physical.getResultSet();
+            if (open != null) {
+                open.close();
+            }
+            physical.clearParameters();
+            physical.clearBatch();
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                try {
+                    physical.close();
+                } catch (SQLException ex) {
+                    LOG.log(Level.FINE, "Error closing cached statement", ex);
+                }
+            }
+        }
+    }
+}
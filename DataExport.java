@@ -0,0 +1,276 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+// Full dumps of the users and appointments tables for reporting. Rows are streamed from the
+// repository (a forward-only, row-by-row result set with MySQL) straight into a buffered file, so
+// memory use does not grow with the table. The file is written next to the target as ".part" and
+// moved into place only when complete. Passwords are never exported.
+//
+// CSV has a header line and RFC 4180 quoting, with times as "yyyy-MM-dd HH:mm:ss[.SSS]". The
+// binary format is smaller and needs no text parsing. Numbers are varints (7 bits per byte, low
+// bits first, high bit set on all but the last byte):
+//
+//   "SMX1", the table name, the column count, then per column its name and type (0 int, 1 text,
+//   2 datetime, 3 timestamp); then per row a 1 byte followed by the values; then a 0 byte and the
+//   row count. Ints are zigzag varints. Text is its UTF-8 length plus one, then the bytes; a
+//   length of 0 means null. Datetimes (the local date and time as epoch seconds taken as UTC) and
+//   timestamps (epoch milliseconds) are zigzag varints plus one, 0 meaning null.
+public final class DataExport {
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long PROGRESS_EVERY_ROWS = 10_000;
+    private static final DateTimeFormatter DATETIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    public enum Format {
+        CSV("csv"), BINARY("smx");
+
+        public final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    public record Result(long rows, long bytes, long elapsedNanos) {
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+        }
+    }
+
+    // Receives rows one at a time from the repositories' stream methods
+    @FunctionalInterface
+    public interface RowSink<T> {
+        void accept(T row) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Source<T> {
+        void stream(RowSink<T> sink) throws SQLException, IOException;
+    }
+
+    private enum Type { INT, TEXT, DATETIME, TIMESTAMP }
+
+    private record Column<T>(String name, Type type, Function<T, Object> value) {
+    }
+
+    private static final List<Column<User>> USER_COLUMNS = List.of(
+        new Column<>("id", Type.INT, User::id),
+        new Column<>("name", Type.TEXT, User::name),
+        new Column<>("role", Type.TEXT, User::role),
+        new Column<>("status", Type.TEXT, User::status));
+
+    private static final List<Column<Appointment>> APPOINTMENT_COLUMNS = List.of(
+        new Column<>("id", Type.INT, Appointment::id),
+        new Column<>("teacher_id", Type.INT, Appointment::teacherId),
+        new Column<>("teacher_name", Type.TEXT, Appointment::teacherName),
+        new Column<>("student_id", Type.INT, Appointment::studentId),
+        new Column<>("student_name", Type.TEXT, Appointment::studentName),
+        new Column<>("time", Type.TEXT, Appointment::time),
+        new Column<>("start_at", Type.DATETIME, a -> a.slot() == null ? null : a.slot().start()),
+        new Column<>("end_at", Type.DATETIME, a -> a.slot() == null ? null : a.slot().end()),
+        new Column<>("status", Type.TEXT, Appointment::status),
+        new Column<>("updated_at", Type.TIMESTAMP, Appointment::updatedAt));
+
+    private DataExport() {
+    }
+
+    // onRows is called on the exporting thread every PROGRESS_EVERY_ROWS rows with the count so far.
+    // An interrupt stops the export and leaves no file behind.
+    public static Result users(Path file, Format format, LongConsumer onRows) throws SQLException, IOException {
+        return export("users", USER_COLUMNS, Repositories.users()::streamUsers, file, format, onRows);
+    }
+
+    public static Result appointments(Path file, Format format, LongConsumer onRows) throws SQLException, IOException {
+        return export("appointments", APPOINTMENT_COLUMNS, Repositories.appointments()::streamAppointments,
+            file, format, onRows);
+    }
+
+    private static <T> Result export(String table, List<Column<T>> columns, Source<T> source, Path file,
+                                     Format format, LongConsumer onRows) throws SQLException, IOException {
+        long started = System.nanoTime();
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        long[] rows = {0};
+        boolean done = false;
+        try {
+            try (Writer writer = format == Format.CSV ? new CsvWriter(part) : new BinaryWriter(part)) {
+                writer.header(table, columns);
+                Object[] values = new Object[columns.size()];
+                source.stream(row -> {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = columns.get(i).value().apply(row);
+                    }
+                    writer.row(columns, values);
+                    if (++rows[0] % PROGRESS_EVERY_ROWS == 0) {
+                        if (Thread.interrupted()) {
+                            throw new InterruptedIOException("Export cancelled");
+                        }
+                        onRows.accept(rows[0]);
+                    }
+                });
+                writer.finish(rows[0]);
+            }
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+            done = true;
+        } finally {
+            if (!done) {
+                Files.deleteIfExists(part);
+            }
+        }
+        Metrics.count("export.rows", rows[0]);
+        return new Result(rows[0], Files.size(file), System.nanoTime() - started);
+    }
+
+    private interface Writer extends Closeable {
+        void header(String table, List<? extends Column<?>> columns) throws IOException;
+
+        void row(List<? extends Column<?>> columns, Object[] values) throws IOException;
+
+        void finish(long rows) throws IOException;
+    }
+
+    private static final class CsvWriter implements Writer {
+        private final BufferedWriter out;
+
+        CsvWriter(Path file) throws IOException {
+            out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8),
+                BUFFER_BYTES);
+        }
+
+        @Override
+        public void header(String table, List<? extends Column<?>> columns) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(columns.get(i).name());
+            }
+            out.write("\r\n");
+        }
+
+        @Override
+        public void row(List<? extends Column<?>> columns, Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                Object value = values[i];
+                switch (value) {
+                    case null -> { }
+                    case Integer n -> out.write(Integer.toString(n));
+                    case LocalDateTime t -> out.write(DATETIME.format(t));
+                    case Timestamp t -> out.write(TIMESTAMP.format(t.toLocalDateTime()));
+                    default -> text(value.toString());
+                }
+            }
+            out.write("\r\n");
+        }
+
+        private void text(String s) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < s.length() && !quote; i++) {
+                char c = s.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(s);
+                return;
+            }
+            out.write('"');
+            out.write(s.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        @Override
+        public void finish(long rows) {
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static final class BinaryWriter implements Writer {
+        private final DataOutputStream out;
+
+        BinaryWriter(Path file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_BYTES));
+        }
+
+        @Override
+        public void header(String table, List<? extends Column<?>> columns) throws IOException {
+            out.writeBytes("SMX1");
+            text(table);
+            varint(columns.size());
+            for (Column<?> column : columns) {
+                text(column.name());
+                varint(column.type().ordinal());
+            }
+        }
+
+        @Override
+        public void row(List<? extends Column<?>> columns, Object[] values) throws IOException {
+            out.writeByte(1);
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                switch (columns.get(i).type()) {
+                    case INT -> varint(zigzag((Integer) value));
+                    case TEXT -> text((String) value);
+                    case DATETIME -> varint(value == null ? 0
+                        : zigzag(((LocalDateTime) value).toEpochSecond(ZoneOffset.UTC)) + 1);
+                    case TIMESTAMP -> varint(value == null ? 0 : zigzag(((Timestamp) value).getTime()) + 1);
+                }
+            }
+        }
+
+        @Override
+        public void finish(long rows) throws IOException {
+            out.writeByte(0);
+            varint(rows);
+        }
+
+        private void text(String s) throws IOException {
+            if (s == null) {
+                varint(0);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1L);
+            out.write(bytes);
+        }
+
+        private static long zigzag(long n) {
+            return (n << 1) ^ (n >> 63);
+        }
+
+        private void varint(long n) throws IOException {
+            while ((n & ~0x7FL) != 0) {
+                out.writeByte((int) (n & 0x7F) | 0x80);
+                n >>>= 7;
+            }
+            out.writeByte((int) n);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -3,11 +3,52 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class Database {
-    private static final String URL = "jdbc:mysql://localhost:3306/sheduledb";
-    private static final String USER = "root"; // Change if you have a different username
-    private static final String PASSWORD = "rootpassword"; // Add your MySQL password if required
+    // Defaults can be overridden with -Dschedule.db.url/-Dschedule.db.user/-Dschedule.db.password,
+    // e.g. to point benchmarks at a scratch database. rewriteBatchedStatements lets the driver send
+    // a JDBC batch (see UserImport) as multi-row INSERTs instead of one round trip per row.
+    private static final String URL = System.getProperty("schedule.db.url",
+        "jdbc:mysql://localhost:3306/sheduledb?rewriteBatchedStatements=true");
+    private static final String USER = System.getProperty("schedule.db.user", "root"); // Change if you have a different username
+    private static final String PASSWORD = System.getProperty("schedule.db.password", "rootpassword"); // Add your MySQL password if required
+
+    // Run with -Dschedule.db.pool=false to open a fresh connection per call, as before pooling
+    private static final boolean POOLED = Boolean.parseBoolean(System.getProperty("schedule.db.pool", "true"));
+
+    // -Dschedule.db.trace=false hands out connections without DbTracing's statement timing
+    private static final boolean TRACED = Boolean.parseBoolean(System.getProperty("schedule.db.trace", "true"));
+
+    private static class PoolHolder {
+        private static final ConnectionPool POOL = createPool();
+
+        private static ConnectionPool createPool() {
+            ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD,
+                Integer.getInteger("schedule.db.pool.maxSize", 10),
+                Long.getLong("schedule.db.pool.maxWaitMillis", 5_000),
+                Long.getLong("schedule.db.pool.validateAfterIdleMillis", 30_000),
+                Long.getLong("schedule.db.pool.leakThresholdMillis", 60_000),
+                Integer.getInteger("schedule.db.pool.statementCacheSize", 32));
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::close, "connection-pool-shutdown"));
+            return pool;
+        }
+    }
 
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        DbEvents.Connect event = new DbEvents.Connect();
+        event.begin();
+        long started = System.nanoTime();
+        Connection con = POOLED ? PoolHolder.POOL.getConnection() : DriverManager.getConnection(URL, USER, PASSWORD);
+        Metrics.record("db.connect", System.nanoTime() - started);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = Metrics.currentOperation();
+            event.pooled = POOLED;
+            event.commit();
+        }
+        return TRACED ? DbTracing.wrap(con) : con;
+    }
+
+    // Returns null when pooling is disabled
+    public static ConnectionPool.Stats poolStats() {
+        return POOLED ? PoolHolder.POOL.stats() : null;
     }
 }
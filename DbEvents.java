@@ -0,0 +1,68 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight Recorder events for the database path and the EDT. They cost next to nothing unless a
+// recording is running, e.g. java -XX:StartFlightRecording=filename=schedule.jfr ... and then
+// jfr print --categories "Schedule Manager" schedule.jfr
+public final class DbEvents {
+    private DbEvents() {
+    }
+
+    @Name("schedule.DbConnect")
+    @Label("Database Connect")
+    @Description("Time to get a connection, from the pool or a new handshake")
+    @Category({"Schedule Manager", "Database"})
+    public static final class Connect extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Pooled")
+        boolean pooled;
+    }
+
+    @Name("schedule.DbExecute")
+    @Label("Database Execute")
+    @Description("Statement execution, up to the first result")
+    @Category({"Schedule Manager", "Database"})
+    public static final class Execute extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("SQL")
+        String sql;
+
+        @Label("Rows Affected")
+        @Description("Update count, or -1 for queries")
+        long rows;
+    }
+
+    @Name("schedule.DbFetch")
+    @Label("Database Fetch")
+    @Description("Reading a result set, from execution until it is exhausted or closed")
+    @Category({"Schedule Manager", "Database"})
+    public static final class Fetch extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("SQL")
+        String sql;
+
+        @Label("Rows")
+        long rows;
+    }
+
+    @Name("schedule.EdtStall")
+    @Label("EDT Stall")
+    @Description("The event dispatch thread did not process events for longer than the stall threshold")
+    @Category({"Schedule Manager", "Swing"})
+    @StackTrace(false)
+    public static final class EdtStall extends Event {
+        @Label("EDT Stack")
+        @Description("Where the EDT was when the stall was detected")
+        String edtStack;
+    }
+}
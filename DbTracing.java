@@ -0,0 +1,195 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+// Wraps connections handed out by Database so that every statement records its execute and
+// fetch times under the current AsyncDb operation (Metrics) and emits DbEvents when Flight
+// Recorder is on. Executes are also recorded together under "db.execute", the overall database
+// round trip. Fetch time runs from execution until the result set is read to the end or its
+// statement is closed, so it includes mapping rows to records.
+final class DbTracing {
+    private static final int MAX_SQL_LENGTH = 500;
+
+    private DbTracing() {
+    }
+
+    static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                Object result = invoke(connection, method, args);
+                switch (method.getName()) {
+                    case "prepareStatement":
+                        return statement(PreparedStatement.class, (PreparedStatement) result, (String) args[0]);
+                    case "createStatement":
+                        return statement(Statement.class, (Statement) result, null);
+                    default:
+                        return result;
+                }
+            });
+    }
+
+    private static <S extends Statement> S statement(Class<S> type, S target, String sql) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+            new StatementHandler(target, sql)));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static String truncate(String sql) {
+        return sql == null || sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        private FetchTrace openFetch; // statements are used by one thread at a time
+
+        StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "executeQuery":
+                    return executeQuery(method, args);
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "executeLargeBatch":
+                case "execute":
+                    return execute(method, args);
+                case "close":
+                    finishFetch();
+                    break;
+                default:
+                    break;
+            }
+            return DbTracing.invoke(target, method, args);
+        }
+
+        private Object executeQuery(Method method, Object[] args) throws Throwable {
+            finishFetch();
+            String operation = Metrics.currentOperation();
+            String text = args != null && args.length > 0 ? (String) args[0] : sql;
+            DbEvents.Execute event = new DbEvents.Execute();
+            event.begin();
+            long started = System.nanoTime();
+            ResultSet rs = (ResultSet) DbTracing.invoke(target, method, args);
+            long elapsed = System.nanoTime() - started;
+            Metrics.record(operation + ".execute", elapsed);
+            Metrics.record("db.execute", elapsed);
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.sql = truncate(text);
+                event.rows = -1;
+                event.commit();
+            }
+            FetchTrace fetch = new FetchTrace(operation, text);
+            openFetch = fetch;
+            return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, m, a) -> {
+                    Object result = DbTracing.invoke(rs, m, a);
+                    if (m.getName().equals("next")) {
+                        if ((Boolean) result) {
+                            fetch.rows++;
+                        } else {
+                            fetch.finish();
+                        }
+                    } else if (m.getName().equals("close")) {
+                        fetch.finish();
+                    }
+                    return result;
+                });
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finishFetch();
+            String operation = Metrics.currentOperation();
+            DbEvents.Execute event = new DbEvents.Execute();
+            event.begin();
+            long started = System.nanoTime();
+            Object result = DbTracing.invoke(target, method, args);
+            long elapsed = System.nanoTime() - started;
+            Metrics.record(operation + ".execute", elapsed);
+            Metrics.record("db.execute", elapsed);
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.sql = truncate(args != null && args.length > 0 && args[0] instanceof String s ? s : sql);
+                event.rows = affectedRows(result);
+                event.commit();
+            }
+            return result;
+        }
+
+        private void finishFetch() {
+            if (openFetch != null) {
+                openFetch.finish();
+                openFetch = null;
+            }
+        }
+
+        private static long affectedRows(Object result) {
+            if (result instanceof Number n) {
+                return n.longValue();
+            }
+            long total = 0;
+            if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    total += Math.max(0, count);
+                }
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    total += Math.max(0, count);
+                }
+            } else {
+                return -1; // execute(): a result set or an update count, not known here
+            }
+            return total;
+        }
+    }
+
+    private static final class FetchTrace {
+        private final String operation;
+        private final String sql;
+        private final DbEvents.Fetch event = new DbEvents.Fetch();
+        private final long started = System.nanoTime();
+        private long rows;
+        private boolean finished;
+
+        FetchTrace(String operation, String sql) {
+            this.operation = operation;
+            this.sql = sql;
+            event.begin();
+        }
+
+        void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            Metrics.record(operation + ".fetch", System.nanoTime() - started);
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.sql = truncate(sql);
+                event.rows = rows;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+import java.util.function.Consumer;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
+
+// Type-ahead helper: runs an action with the field's text once typing has paused, so a burst of
+// keystrokes costs one search instead of one per key. Everything happens on the EDT.
+public final class Debounce {
+    private Debounce() {
+    }
+
+    public static void onTextChange(JTextComponent field, int delayMillis, Consumer<String> action) {
+        Timer timer = new Timer(delayMillis, e -> action.accept(field.getText().trim()));
+        timer.setRepeats(false);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                timer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                timer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+
+// Posts a no-op to the event dispatch thread every 100 ms and times how long it waits in the
+// queue. A wait longer than -Dschedule.edt.stallThresholdMillis (default 250) is a stall: the UI
+// froze for that long. Each stall is logged with the EDT's stack at the time, recorded under
+// "edt.stall" in Metrics and emitted as a DbEvents.EdtStall event. The steady trickle of events
+// keeps AWT from shutting down on its own, so only start it where the application exits
+// explicitly (the main frame uses EXIT_ON_CLOSE).
+public final class EdtWatchdog {
+    private static final Logger LOG = Logger.getLogger(EdtWatchdog.class.getName());
+    private static final long THRESHOLD_MILLIS = Long.getLong("schedule.edt.stallThresholdMillis", 250);
+    private static final long INTERVAL_MILLIS = 100;
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+
+    private static volatile Thread edt;
+
+    private EdtWatchdog() {
+    }
+
+    public static void start() {
+        if (STARTED.compareAndSet(false, true)) {
+            Thread.ofPlatform().name("edt-watchdog").daemon().start(EdtWatchdog::watch);
+        }
+    }
+
+    private static void watch() {
+        try {
+            while (true) {
+                CountDownLatch processed = new CountDownLatch(1);
+                DbEvents.EdtStall event = new DbEvents.EdtStall();
+                event.begin();
+                long posted = System.nanoTime();
+                SwingUtilities.invokeLater(() -> {
+                    edt = Thread.currentThread();
+                    processed.countDown();
+                });
+                if (!processed.await(THRESHOLD_MILLIS, TimeUnit.MILLISECONDS)) {
+                    String stack = stackOf(edt);
+                    processed.await();
+                    long stallNanos = System.nanoTime() - posted;
+                    Metrics.record("edt.stall", stallNanos);
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.edtStack = stack;
+                        event.commit();
+                    }
+                    LOG.warning("Event dispatch thread stalled for " + stallNanos / 1_000_000 + " ms at:\n" + stack);
+                }
+                Thread.sleep(INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String stackOf(Thread thread) {
+        if (thread == null) {
+            return "(EDT not started yet)";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (StackTraceElement frame : thread.getStackTrace()) {
+            sb.append("\tat ").append(frame).append('\n');
+        }
+        return sb.toString();
+    }
+}
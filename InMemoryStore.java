@@ -0,0 +1,532 @@
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Storage engine that keeps everything in concurrent maps inside the process, with secondary
+// indexes for the lookups the UI makes (login, name prefix, teachers by status, appointments by
+// teacher, by student and by updated_at). Reads take no locks; writes lock only the teacher or
+// index they touch.
+// Nothing is persisted.
+public class InMemoryStore implements UserRepository, TeacherRepository, AppointmentRepository {
+    private final ConcurrentSkipListMap<Integer, StoredUser> users = new ConcurrentSkipListMap<>();
+    private final Map<String, Integer> userIdsByLogin = new ConcurrentHashMap<>();
+    // nameKey -> id, in the order findByNamePrefix returns users
+    private final ConcurrentSkipListMap<String, Integer> userIdsByName = new ConcurrentSkipListMap<>();
+    private final ReentrantLock userLock = new ReentrantLock();
+
+    private final Map<Integer, Teacher> teachers = new ConcurrentHashMap<>();
+    private final Map<String, Set<Integer>> teacherIdsByStatus = new ConcurrentHashMap<>();
+    private final Map<Integer, String> studentNames = new ConcurrentHashMap<>();
+
+    private final Map<Integer, Appointment> appointments = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Integer>> appointmentIdsByTeacher = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Integer>> appointmentIdsByStudent = new ConcurrentHashMap<>();
+    // updated_at -> ids last changed then; the sets are immutable and replaced whole, so compute's
+    // retries are harmless
+    private final ConcurrentSkipListMap<Timestamp, Set<Integer>> appointmentIdsByUpdate = new ConcurrentSkipListMap<>();
+    private final Map<Integer, WeeklyAvailability> availability = new ConcurrentHashMap<>();
+    private final Map<Integer, ReentrantLock> teacherLocks = new ConcurrentHashMap<>();
+    private final AtomicInteger nextAppointmentId = new AtomicInteger(1);
+    private final Set<String> requestKeys = ConcurrentHashMap.newKeySet();
+
+    // Seeding
+
+    // The password is kept as a legacy plaintext one, hashed on the user's first login
+    public void addUser(User user, String password) {
+        userLock.lock();
+        try {
+            StoredUser previous = users.put(user.id(), new StoredUser(user, null, password));
+            if (previous != null) {
+                userIdsByLogin.remove(loginKey(previous.user.name(), previous.user.role()));
+                userIdsByName.remove(nameKey(previous.user));
+            }
+            userIdsByLogin.put(loginKey(user.name(), user.role()), user.id());
+            userIdsByName.put(nameKey(user), user.id());
+        } finally {
+            userLock.unlock();
+        }
+    }
+
+    public void addTeacher(Teacher teacher) {
+        ReentrantLock lock = lockFor(teacher.id());
+        lock.lock();
+        try {
+            Teacher previous = teachers.put(teacher.id(), teacher);
+            if (previous != null) {
+                idsWith(teacherIdsByStatus, previous.status()).remove(teacher.id());
+            }
+            idsWith(teacherIdsByStatus, teacher.status()).add(teacher.id());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void addStudent(int id, String name) {
+        studentNames.put(id, name);
+    }
+
+    // UserRepository
+
+    @Override
+    public Credentials findCredentials(String name, String role) {
+        Integer id = userIdsByLogin.get(loginKey(name, role));
+        StoredUser stored = id == null ? null : users.get(id);
+        return stored == null ? null : new Credentials(id, stored.passwordHash, stored.legacyPassword);
+    }
+
+    @Override
+    public void setPasswordHash(int id, String passwordHash) {
+        userLock.lock();
+        try {
+            StoredUser stored = users.get(id);
+            if (stored != null) {
+                users.put(id, new StoredUser(stored.user, passwordHash, null));
+            }
+        } finally {
+            userLock.unlock();
+        }
+    }
+
+    @Override
+    public List<User> findPageAfter(int afterId, int limit) {
+        List<User> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<StoredUser> it = users.tailMap(afterId, false).values().iterator();
+        while (page.size() < limit && it.hasNext()) {
+            page.add(it.next().user);
+        }
+        return page;
+    }
+
+    @Override
+    public Integer idAtOffsetAfter(int afterId, int offset) {
+        Iterator<Integer> it = users.tailMap(afterId, false).keySet().iterator();
+        for (int i = 0; i < offset && it.hasNext(); i++) {
+            it.next();
+        }
+        return it.hasNext() ? it.next() : null;
+    }
+
+    @Override
+    public long estimateCount() {
+        return users.size();
+    }
+
+    @Override
+    public List<User> findByNamePrefix(String prefix, int limit) {
+        String from = prefix.toLowerCase(Locale.ROOT);
+        List<User> found = new ArrayList<>(Math.min(limit, 64));
+        for (Integer id : userIdsByName.subMap(from, from + '\uffff').values()) {
+            if (found.size() == limit) {
+                break;
+            }
+            StoredUser stored = users.get(id);
+            // Skips a user renamed or deleted since the key was read
+            if (stored != null && stored.user.name().regionMatches(true, 0, prefix, 0, prefix.length())) {
+                found.add(stored.user);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void streamUsers(DataExport.RowSink<User> sink) throws IOException {
+        for (StoredUser stored : users.values()) {
+            sink.accept(stored.user);
+        }
+    }
+
+    @Override
+    public boolean insert(NewUser user) {
+        userLock.lock();
+        try {
+            int id = user.id() != null ? user.id() : (users.isEmpty() ? 1 : users.lastKey() + 1);
+            String login = loginKey(user.name(), user.role());
+            if (users.containsKey(id) || userIdsByLogin.containsKey(login)) {
+                return false;
+            }
+            User created = new User(id, user.name(), user.role(), user.status(), 0);
+            users.put(id, new StoredUser(created, user.passwordHash(), null));
+            userIdsByLogin.put(login, id);
+            userIdsByName.put(nameKey(created), id);
+            return true;
+        } finally {
+            userLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean[] insertAll(List<NewUser> users, int batchSize) {
+        boolean[] inserted = new boolean[users.size()];
+        for (int i = 0; i < inserted.length; i++) {
+            inserted[i] = insert(users.get(i));
+        }
+        return inserted;
+    }
+
+    @Override
+    public UpdateResult update(int id, int version, String name, String role) {
+        userLock.lock();
+        try {
+            StoredUser stored = users.get(id);
+            if (stored == null || stored.user.version() != version) {
+                return new UpdateResult(false, stored == null ? null : stored.user);
+            }
+            User updated = new User(id, name, role, stored.user.status(), version + 1);
+            users.put(id, new StoredUser(updated, stored.passwordHash, stored.legacyPassword));
+            userIdsByLogin.remove(loginKey(stored.user.name(), stored.user.role()));
+            userIdsByLogin.put(loginKey(name, role), id);
+            userIdsByName.remove(nameKey(stored.user));
+            userIdsByName.put(nameKey(updated), id);
+            return new UpdateResult(true, null);
+        } finally {
+            userLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(int id) {
+        userLock.lock();
+        try {
+            StoredUser removed = users.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            userIdsByLogin.remove(loginKey(removed.user.name(), removed.user.role()));
+            userIdsByName.remove(nameKey(removed.user));
+            return true;
+        } finally {
+            userLock.unlock();
+        }
+    }
+
+    // TeacherRepository
+
+    @Override
+    public List<Teacher> findByStatus(String status) {
+        List<Teacher> result = new ArrayList<>();
+        for (Integer id : teacherIdsByStatus.getOrDefault(status, Set.of())) {
+            Teacher teacher = teachers.get(id);
+            if (teacher != null && teacher.status().equals(status)) {
+                result.add(teacher);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void updateStatus(int teacherId, String status) {
+        Teacher teacher = teachers.get(teacherId);
+        if (teacher != null) {
+            addTeacher(new Teacher(teacherId, teacher.name(), status));
+        }
+    }
+
+    @Override
+    public WeeklyAvailability findAvailability(int teacherId) {
+        return availability.getOrDefault(teacherId, WeeklyAvailability.NONE);
+    }
+
+    @Override
+    public Map<Integer, WeeklyAvailability> findAllAvailability() {
+        return new HashMap<>(availability);
+    }
+
+    @Override
+    public void saveAvailability(int teacherId, WeeklyAvailability slots) {
+        availability.put(teacherId, slots);
+    }
+
+    // AppointmentRepository
+
+    @Override
+    public List<Appointment> changesForTeacher(int teacherId, Timestamp since) {
+        List<Appointment> changes = new ArrayList<>();
+        for (Integer id : appointmentIdsByTeacher.getOrDefault(teacherId, Set.of())) {
+            Appointment appointment = appointments.get(id);
+            String studentName = studentNames.get(appointment.studentId());
+            if (studentName != null && (since == null || !appointment.updatedAt().before(since))) {
+                changes.add(withNames(appointment, null, studentName));
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public List<Appointment> changesForStudent(int studentId, Timestamp since) {
+        List<Appointment> changes = new ArrayList<>();
+        for (Integer id : appointmentIdsByStudent.getOrDefault(studentId, Set.of())) {
+            Appointment appointment = appointments.get(id);
+            Teacher teacher = teachers.get(appointment.teacherId());
+            if (teacher != null && (since == null || !appointment.updatedAt().before(since))) {
+                changes.add(withNames(appointment, teacher.name(), null));
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public List<Appointment> findForTeacherBetween(int teacherId, LocalDateTime from, LocalDateTime to) {
+        List<Appointment> found = new ArrayList<>();
+        for (Appointment appointment : startingBetween(appointmentIdsByTeacher.getOrDefault(teacherId, Set.of()), from, to)) {
+            String studentName = studentNames.get(appointment.studentId());
+            if (studentName != null) {
+                found.add(withNames(appointment, null, studentName));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public List<Appointment> findForStudentBetween(int studentId, LocalDateTime from, LocalDateTime to) {
+        List<Appointment> found = new ArrayList<>();
+        for (Appointment appointment : startingBetween(appointmentIdsByStudent.getOrDefault(studentId, Set.of()), from, to)) {
+            Teacher teacher = teachers.get(appointment.teacherId());
+            if (teacher != null) {
+                found.add(withNames(appointment, teacher.name(), null));
+            }
+        }
+        return found;
+    }
+
+    private List<Appointment> startingBetween(Set<Integer> ids, LocalDateTime from, LocalDateTime to) {
+        List<Appointment> found = new ArrayList<>();
+        for (Integer id : ids) {
+            Appointment appointment = appointments.get(id);
+            if (appointment.slot() != null && !appointment.slot().start().isBefore(from)
+                    && appointment.slot().start().isBefore(to)) {
+                found.add(appointment);
+            }
+        }
+        found.sort(Comparator.comparing(a -> a.slot().start()));
+        return found;
+    }
+
+    // The index only supplies candidates: a row updated while this runs may be met under its old
+    // and its new time, so ids are de-duplicated and each row is read as it is now
+    @Override
+    public List<Appointment> changesSince(Timestamp since) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (Set<Integer> changed : appointmentIdsByUpdate.tailMap(since, true).values()) {
+            ids.addAll(changed);
+        }
+        List<Appointment> changes = new ArrayList<>();
+        for (Integer id : ids) {
+            Appointment appointment = appointments.get(id);
+            if (appointment == null || appointment.updatedAt().before(since)) {
+                continue;
+            }
+            Teacher teacher = teachers.get(appointment.teacherId());
+            String studentName = studentNames.get(appointment.studentId());
+            if (teacher != null && studentName != null) {
+                changes.add(withNames(appointment, teacher.name(), studentName));
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public void streamAppointments(DataExport.RowSink<Appointment> sink) throws IOException {
+        List<Integer> ids = new ArrayList<>(appointments.keySet());
+        ids.sort(null);
+        for (int id : ids) {
+            Appointment appointment = appointments.get(id);
+            if (appointment != null) {
+                Teacher teacher = teachers.get(appointment.teacherId());
+                sink.accept(withNames(appointment, teacher == null ? null : teacher.name(),
+                    studentNames.get(appointment.studentId())));
+            }
+        }
+    }
+
+    @Override
+    public Timestamp latestChange() {
+        Map.Entry<Timestamp, Set<Integer>> latest = appointmentIdsByUpdate.lastEntry();
+        return latest == null ? null : latest.getKey();
+    }
+
+    @Override
+    public int[] updateStatus(int teacherId, int[] appointmentIds, int[] versions, String status) {
+        ReentrantLock lock = lockFor(teacherId);
+        lock.lock();
+        try {
+            List<Integer> conflicts = new ArrayList<>();
+            for (int i = 0; i < appointmentIds.length; i++) {
+                Appointment appointment = appointments.get(appointmentIds[i]);
+                if (appointment == null || appointment.teacherId() != teacherId) {
+                    if (versions != null) {
+                        conflicts.add(appointmentIds[i]);
+                    }
+                } else if (!appointment.status().equals(status)) {
+                    if (versions != null && appointment.version() != versions[i]) {
+                        conflicts.add(appointmentIds[i]);
+                        continue;
+                    }
+                    putAppointment(appointment, new Appointment(appointment.id(), teacherId,
+                        appointment.studentId(), null, null, appointment.time(), appointment.slot(), status,
+                        new Timestamp(System.currentTimeMillis()), appointment.version() + 1));
+                }
+            }
+            return conflicts.stream().mapToInt(Integer::intValue).toArray();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<TimeSlot> bookedSlots(int teacherId, LocalDateTime endingAfter) {
+        List<TimeSlot> slots = new ArrayList<>();
+        for (Integer id : appointmentIdsByTeacher.getOrDefault(teacherId, Set.of())) {
+            Appointment appointment = appointments.get(id);
+            if (isBooked(appointment) && appointment.slot().end().isAfter(endingAfter)) {
+                slots.add(appointment.slot());
+            }
+        }
+        return slots;
+    }
+
+    @Override
+    public Map<Integer, List<TimeSlot>> bookedSlots(Collection<Integer> teacherIds, LocalDateTime from, LocalDateTime to) {
+        Map<Integer, List<TimeSlot>> slots = new HashMap<>();
+        for (int teacherId : teacherIds) {
+            List<TimeSlot> booked = bookedBetween(appointmentIdsByTeacher.getOrDefault(teacherId, Set.of()), from, to);
+            if (!booked.isEmpty()) {
+                slots.put(teacherId, booked);
+            }
+        }
+        return slots;
+    }
+
+    @Override
+    public List<TimeSlot> studentBookedSlots(int studentId, LocalDateTime from, LocalDateTime to) {
+        return bookedBetween(appointmentIdsByStudent.getOrDefault(studentId, Set.of()), from, to);
+    }
+
+    private List<TimeSlot> bookedBetween(Set<Integer> ids, LocalDateTime from, LocalDateTime to) {
+        List<TimeSlot> slots = new ArrayList<>();
+        for (Integer id : ids) {
+            Appointment appointment = appointments.get(id);
+            if (isBooked(appointment) && appointment.slot().start().isBefore(to) && appointment.slot().end().isAfter(from)) {
+                slots.add(appointment.slot());
+            }
+        }
+        return slots;
+    }
+
+    @Override
+    public boolean insertIfFree(int studentId, int teacherId, TimeSlot slot) {
+        ReentrantLock lock = lockFor(teacherId);
+        lock.lock();
+        try {
+            for (Integer id : appointmentIdsByTeacher.getOrDefault(teacherId, Set.of())) {
+                Appointment appointment = appointments.get(id);
+                if (isBooked(appointment) && appointment.slot().start().isBefore(slot.end())
+                        && appointment.slot().end().isAfter(slot.start())) {
+                    return false;
+                }
+            }
+            int id = nextAppointmentId.getAndIncrement();
+            putAppointment(null, new Appointment(id, teacherId, studentId, null, null, slot.format(), slot,
+                "pending", new Timestamp(System.currentTimeMillis()), 0));
+            idsWith(appointmentIdsByTeacher, teacherId).add(id);
+            idsWith(appointmentIdsByStudent, studentId).add(id);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Each write is atomic on its own, but a batch is not; WriteJournal is the only caller
+    @Override
+    public boolean[] applyWrites(List<JournalWrite> writes) {
+        boolean[] applied = new boolean[writes.size()];
+        for (int i = 0; i < writes.size(); i++) {
+            switch (writes.get(i)) {
+                case JournalWrite.Request r -> {
+                    ReentrantLock lock = lockFor(r.teacherId());
+                    lock.lock();
+                    try {
+                        applied[i] = requestKeys.contains(r.key())
+                            || insertIfFree(r.studentId(), r.teacherId(), r.slot()) && requestKeys.add(r.key());
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                case JournalWrite.StatusChange c ->
+                    applied[i] = updateStatus(c.teacherId(), c.appointmentIds(), c.versions(), c.status()).length == 0;
+            }
+        }
+        return applied;
+    }
+
+    private ReentrantLock lockFor(int teacherId) {
+        return teacherLocks.computeIfAbsent(teacherId, id -> new ReentrantLock());
+    }
+
+    // Stores a new version of an appointment (previous is null for a new one) and moves it in the
+    // updated_at index. Callers hold the teacher's lock. The new time is indexed before the old one
+    // is dropped, so a concurrent changesSince always finds the id under one of them.
+    private void putAppointment(Appointment previous, Appointment next) {
+        appointmentIdsByUpdate.compute(next.updatedAt(), (time, ids) -> with(ids, next.id()));
+        appointments.put(next.id(), next);
+        if (previous != null && !previous.updatedAt().equals(next.updatedAt())) {
+            appointmentIdsByUpdate.computeIfPresent(previous.updatedAt(), (time, ids) -> without(ids, previous.id()));
+        }
+    }
+
+    private static Set<Integer> with(Set<Integer> ids, int id) {
+        if (ids == null) {
+            return Set.of(id);
+        }
+        Set<Integer> copy = new HashSet<>(ids);
+        copy.add(id);
+        return Set.copyOf(copy);
+    }
+
+    // Null, which removes the entry, once the last id is gone
+    private static Set<Integer> without(Set<Integer> ids, int id) {
+        Set<Integer> copy = new HashSet<>(ids);
+        copy.remove(id);
+        return copy.isEmpty() ? null : Set.copyOf(copy);
+    }
+
+    private static boolean isBooked(Appointment appointment) {
+        return appointment.slot() != null
+            && (appointment.status().equals("pending") || appointment.status().equals("approved"));
+    }
+
+    private static Appointment withNames(Appointment a, String teacherName, String studentName) {
+        return new Appointment(a.id(), a.teacherId(), a.studentId(), teacherName, studentName,
+            a.time(), a.slot(), a.status(), a.updatedAt(), a.version());
+    }
+
+    private static <K> Set<Integer> idsWith(Map<K, Set<Integer>> index, K key) {
+        return index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    private static String loginKey(String name, String role) {
+        return name + '\u0000' + role;
+    }
+
+    // Lower-cased name, then role, then id; '\u0000' sorts "ann" before "anna"
+    private static String nameKey(User user) {
+        return user.name().toLowerCase(Locale.ROOT) + '\u0000' + user.role() + '\u0000' + user.id();
+    }
+
+    private record StoredUser(User user, String passwordHash, String legacyPassword) {
+    }
+}
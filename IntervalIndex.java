@@ -0,0 +1,51 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+// Busy time of one teacher as sorted, non-overlapping [start, end) minute ranges.
+// Lookups are O(log n). Not thread-safe; callers hold a lock around it.
+public class IntervalIndex {
+    private final TreeMap<Long, Long> busy = new TreeMap<>();
+
+    public boolean overlaps(long start, long end) {
+        // Ranges are disjoint, so only the last one starting before `end` can reach past `start`
+        Map.Entry<Long, Long> candidate = busy.lowerEntry(end);
+        return candidate != null && candidate.getValue() > start;
+    }
+
+    // Adjacent or overlapping ranges are merged
+    public void add(long start, long end) {
+        Map.Entry<Long, Long> entry = busy.floorEntry(start);
+        if (entry != null && entry.getValue() >= start) {
+            start = entry.getKey();
+            end = Math.max(end, entry.getValue());
+            busy.remove(entry.getKey());
+        }
+        while ((entry = busy.ceilingEntry(start)) != null && entry.getKey() <= end) {
+            end = Math.max(end, entry.getValue());
+            busy.remove(entry.getKey());
+        }
+        busy.put(start, end);
+    }
+
+    public void clear() {
+        busy.clear();
+    }
+
+    // Start of the free range of the given length closest to `start`, never before `notBefore`
+    public long nearestFree(long start, long length, long notBefore) {
+        long later = Math.max(start, notBefore);
+        Map.Entry<Long, Long> entry;
+        while ((entry = busy.lowerEntry(later + length)) != null && entry.getValue() > later) {
+            later = entry.getValue();
+        }
+
+        long earlier = start;
+        while ((entry = busy.lowerEntry(earlier + length)) != null && entry.getValue() > earlier) {
+            earlier = entry.getKey() - length;
+        }
+        if (earlier < notBefore) {
+            return later;
+        }
+        return start - earlier < later - start ? earlier : later;
+    }
+}
@@ -0,0 +1,411 @@
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+public class JdbcAppointmentRepository implements AppointmentRepository {
+    private static final int MAX_IDS_PER_UPDATE = 1000;
+
+    @Override
+    public List<Appointment> changesForTeacher(int teacherId, Timestamp since) throws SQLException {
+        return changes("SELECT a.id, a.teacher_id, a.student_id, NULL AS teacher_name, s.name AS student_name, " +
+                       "a.time, a.start_at, a.end_at, a.status, a.updated_at, a.version " +
+                       "FROM appointments a JOIN students s ON a.student_id = s.id WHERE a.teacher_id = ?", teacherId, since);
+    }
+
+    @Override
+    public List<Appointment> changesForStudent(int studentId, Timestamp since) throws SQLException {
+        return changes("SELECT a.id, a.teacher_id, a.student_id, t.name AS teacher_name, NULL AS student_name, " +
+                       "a.time, a.start_at, a.end_at, a.status, a.updated_at, a.version " +
+                       "FROM appointments a JOIN teachers t ON a.teacher_id = t.id WHERE a.student_id = ?", studentId, since);
+    }
+
+    // Range scans on idx_appointments_teacher_start and idx_appointments_student_start
+    @Override
+    public List<Appointment> findForTeacherBetween(int teacherId, LocalDateTime from, LocalDateTime to)
+            throws SQLException {
+        return between("SELECT a.id, a.teacher_id, a.student_id, NULL AS teacher_name, s.name AS student_name, " +
+                       "a.time, a.start_at, a.end_at, a.status, a.updated_at, a.version " +
+                       "FROM appointments a JOIN students s ON a.student_id = s.id WHERE a.teacher_id = ?", teacherId, from, to);
+    }
+
+    @Override
+    public List<Appointment> findForStudentBetween(int studentId, LocalDateTime from, LocalDateTime to)
+            throws SQLException {
+        return between("SELECT a.id, a.teacher_id, a.student_id, t.name AS teacher_name, NULL AS student_name, " +
+                       "a.time, a.start_at, a.end_at, a.status, a.updated_at, a.version " +
+                       "FROM appointments a JOIN teachers t ON a.teacher_id = t.id WHERE a.student_id = ?", studentId, from, to);
+    }
+
+    // A range scan on idx_appointments_updated; students and teachers are joined by primary key
+    @Override
+    public List<Appointment> changesSince(Timestamp since) throws SQLException {
+        List<Appointment> changes = new ArrayList<>();
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(
+                 "SELECT a.id, a.teacher_id, a.student_id, t.name AS teacher_name, s.name AS student_name, " +
+                 "a.time, a.start_at, a.end_at, a.status, a.updated_at, a.version " +
+                 "FROM appointments a JOIN teachers t ON a.teacher_id = t.id JOIN students s ON a.student_id = s.id " +
+                 "WHERE a.updated_at >= ?")) {
+            stmt.setTimestamp(1, since);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                changes.add(toAppointment(rs));
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public Timestamp latestChange() throws SQLException {
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement("SELECT MAX(updated_at) FROM appointments")) {
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getTimestamp(1) : null;
+        }
+    }
+
+    // Streamed row by row like JdbcUserRepository.streamUsers
+    @Override
+    public void streamAppointments(DataExport.RowSink<Appointment> sink) throws SQLException, IOException {
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(
+                 "SELECT a.id, a.teacher_id, a.student_id, t.name AS teacher_name, s.name AS student_name, " +
+                 "a.time, a.start_at, a.end_at, a.status, a.updated_at, a.version " +
+                 "FROM appointments a LEFT JOIN teachers t ON a.teacher_id = t.id " +
+                 "LEFT JOIN students s ON a.student_id = s.id ORDER BY a.id",
+                 ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    sink.accept(toAppointment(rs));
+                }
+            }
+        }
+    }
+
+    // One transaction, and a version check and an UPDATE ... WHERE id IN (...) per chunk of ids
+    @Override
+    public int[] updateStatus(int teacherId, int[] appointmentIds, int[] versions, String status) throws SQLException {
+        try (Connection con = Database.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                int[] conflicts = setStatus(con, teacherId, appointmentIds, versions, status);
+                con.commit();
+                return conflicts;
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    @Override
+    public List<TimeSlot> bookedSlots(int teacherId, LocalDateTime endingAfter) throws SQLException {
+        List<TimeSlot> slots = new ArrayList<>();
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(
+                 "SELECT start_at, end_at FROM appointments WHERE teacher_id = ? AND end_at > ? " +
+                 "AND status IN ('pending', 'approved')")) {
+            stmt.setInt(1, teacherId);
+            stmt.setTimestamp(2, Timestamp.valueOf(endingAfter));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                slots.add(new TimeSlot(rs.getTimestamp("start_at").toLocalDateTime(),
+                                       rs.getTimestamp("end_at").toLocalDateTime()));
+            }
+        }
+        return slots;
+    }
+
+    // A range on idx_appointments_teacher_start per teacher, in chunks of ids
+    @Override
+    public Map<Integer, List<TimeSlot>> bookedSlots(Collection<Integer> teacherIds, LocalDateTime from,
+                                                    LocalDateTime to) throws SQLException {
+        Map<Integer, List<TimeSlot>> slots = new HashMap<>();
+        List<Integer> ids = List.copyOf(teacherIds);
+        try (Connection con = Database.getConnection()) {
+            for (int first = 0; first < ids.size(); first += MAX_IDS_PER_UPDATE) {
+                List<Integer> chunk = ids.subList(first, Math.min(first + MAX_IDS_PER_UPDATE, ids.size()));
+                String sql = "SELECT teacher_id, start_at, end_at FROM appointments WHERE teacher_id IN (" +
+                             String.join(", ", Collections.nCopies(chunk.size(), "?")) + ") " +
+                             "AND start_at < ? AND end_at > ? AND status IN ('pending', 'approved')";
+                try (PreparedStatement stmt = con.prepareStatement(sql)) {
+                    int index = 1;
+                    for (int id : chunk) {
+                        stmt.setInt(index++, id);
+                    }
+                    stmt.setTimestamp(index++, Timestamp.valueOf(to));
+                    stmt.setTimestamp(index, Timestamp.valueOf(from));
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        slots.computeIfAbsent(rs.getInt("teacher_id"), id -> new ArrayList<>())
+                            .add(new TimeSlot(rs.getTimestamp("start_at").toLocalDateTime(),
+                                              rs.getTimestamp("end_at").toLocalDateTime()));
+                    }
+                }
+            }
+        }
+        return slots;
+    }
+
+    @Override
+    public List<TimeSlot> studentBookedSlots(int studentId, LocalDateTime from, LocalDateTime to) throws SQLException {
+        List<TimeSlot> slots = new ArrayList<>();
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(
+                 "SELECT start_at, end_at FROM appointments WHERE student_id = ? AND start_at < ? AND end_at > ? " +
+                 "AND status IN ('pending', 'approved')")) {
+            stmt.setInt(1, studentId);
+            stmt.setTimestamp(2, Timestamp.valueOf(to));
+            stmt.setTimestamp(3, Timestamp.valueOf(from));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                slots.add(new TimeSlot(rs.getTimestamp("start_at").toLocalDateTime(),
+                                       rs.getTimestamp("end_at").toLocalDateTime()));
+            }
+        }
+        return slots;
+    }
+
+    // The row lock on the teacher serializes bookings for that teacher across all clients
+    @Override
+    public boolean insertIfFree(int studentId, int teacherId, TimeSlot slot) throws SQLException {
+        try (Connection con = Database.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                lockTeacher(con, teacherId);
+                if (isTaken(con, teacherId, slot)) {
+                    con.rollback();
+                    return false;
+                }
+                insert(con, studentId, teacherId, slot, null);
+                con.commit();
+                return true;
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    // Requests take the same teacher row lock as insertIfFree; uq_appointments_request_key makes a
+    // replayed request a no-op. Every teacher of the batch is locked up front in id order, since
+    // journal order differs between processes and locking as the writes come would let two
+    // processes each hold a teacher the other waits for
+    @Override
+    public boolean[] applyWrites(List<JournalWrite> writes) throws SQLException {
+        boolean[] applied = new boolean[writes.size()];
+        SortedSet<Integer> teacherIds = new TreeSet<>();
+        for (JournalWrite write : writes) {
+            teacherIds.add(switch (write) {
+                case JournalWrite.Request r -> r.teacherId();
+                case JournalWrite.StatusChange c -> c.teacherId();
+            });
+        }
+        try (Connection con = Database.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                lockTeachers(con, new ArrayList<>(teacherIds));
+                for (int i = 0; i < writes.size(); i++) {
+                    switch (writes.get(i)) {
+                        case JournalWrite.Request r -> {
+                            if (hasRequest(con, r.key())) {
+                                applied[i] = true;
+                                continue;
+                            }
+                            if (!isTaken(con, r.teacherId(), r.slot())) {
+                                insert(con, r.studentId(), r.teacherId(), r.slot(), r.key());
+                                applied[i] = true;
+                            }
+                        }
+                        case JournalWrite.StatusChange c ->
+                            applied[i] = setStatus(con, c.teacherId(), c.appointmentIds(), c.versions(), c.status())
+                                .length == 0;
+                    }
+                }
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            }
+        }
+        return applied;
+    }
+
+    private static List<Appointment> changes(String sql, int ownerId, Timestamp since) throws SQLException {
+        List<Appointment> changes = new ArrayList<>();
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(sql + (since == null ? "" : " AND a.updated_at >= ?"))) {
+            stmt.setInt(1, ownerId);
+            if (since != null) {
+                stmt.setTimestamp(2, since);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                changes.add(toAppointment(rs));
+            }
+        }
+        return changes;
+    }
+
+    private static List<Appointment> between(String sql, int ownerId, LocalDateTime from, LocalDateTime to)
+            throws SQLException {
+        List<Appointment> appointments = new ArrayList<>();
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(sql + " AND a.start_at >= ? AND a.start_at < ? ORDER BY a.start_at")) {
+            stmt.setInt(1, ownerId);
+            stmt.setTimestamp(2, Timestamp.valueOf(from));
+            stmt.setTimestamp(3, Timestamp.valueOf(to));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                appointments.add(toAppointment(rs));
+            }
+        }
+        return appointments;
+    }
+
+    private static Appointment toAppointment(ResultSet rs) throws SQLException {
+        Timestamp startAt = rs.getTimestamp("start_at");
+        Timestamp endAt = rs.getTimestamp("end_at");
+        return new Appointment(
+            rs.getInt("id"),
+            rs.getInt("teacher_id"),
+            rs.getInt("student_id"),
+            rs.getString("teacher_name"),
+            rs.getString("student_name"),
+            rs.getString("time"),
+            startAt == null || endAt == null ? null : new TimeSlot(startAt.toLocalDateTime(), endAt.toLocalDateTime()),
+            rs.getString("status"),
+            rs.getTimestamp("updated_at"),
+            rs.getInt("version")
+        );
+    }
+
+    private static void lockTeacher(Connection con, int teacherId) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT id FROM teachers WHERE id = ? FOR UPDATE")) {
+            stmt.setInt(1, teacherId);
+            stmt.executeQuery();
+        }
+    }
+
+    // Ascending ids, in chunks that stay ascending, so every caller takes the locks in one order
+    private static void lockTeachers(Connection con, List<Integer> sortedIds) throws SQLException {
+        for (int from = 0; from < sortedIds.size(); from += MAX_IDS_PER_UPDATE) {
+            List<Integer> chunk = sortedIds.subList(from, Math.min(from + MAX_IDS_PER_UPDATE, sortedIds.size()));
+            try (PreparedStatement stmt = con.prepareStatement("SELECT id FROM teachers WHERE id IN (" +
+                     String.join(", ", Collections.nCopies(chunk.size(), "?")) + ") ORDER BY id FOR UPDATE")) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setInt(i + 1, chunk.get(i));
+                }
+                stmt.executeQuery();
+            }
+        }
+    }
+
+    private static boolean isTaken(Connection con, int teacherId, TimeSlot slot) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(
+                 "SELECT 1 FROM appointments WHERE teacher_id = ? AND start_at < ? AND end_at > ? " +
+                 "AND status IN ('pending', 'approved') LIMIT 1")) {
+            stmt.setInt(1, teacherId);
+            stmt.setTimestamp(2, Timestamp.valueOf(slot.end()));
+            stmt.setTimestamp(3, Timestamp.valueOf(slot.start()));
+            return stmt.executeQuery().next();
+        }
+    }
+
+    // requestKey is null for requests that did not go through WriteJournal
+    private static void insert(Connection con, int studentId, int teacherId, TimeSlot slot, String requestKey)
+            throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(
+                 "INSERT INTO appointments (student_id, teacher_id, time, start_at, end_at, status, request_key) " +
+                 "VALUES (?, ?, ?, ?, ?, 'pending', ?)")) {
+            stmt.setInt(1, studentId);
+            stmt.setInt(2, teacherId);
+            stmt.setString(3, slot.format());
+            stmt.setTimestamp(4, Timestamp.valueOf(slot.start()));
+            stmt.setTimestamp(5, Timestamp.valueOf(slot.end()));
+            stmt.setString(6, requestKey);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static boolean hasRequest(Connection con, String requestKey) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT 1 FROM appointments WHERE request_key = ?")) {
+            stmt.setString(1, requestKey);
+            return stmt.executeQuery().next();
+        }
+    }
+
+    // The versions are compared under the row locks the UPDATE would take anyway, so the check and
+    // the write are one step for other transactions; they are held only until the caller commits
+    private static int[] setStatus(Connection con, int teacherId, int[] appointmentIds, int[] versions,
+                                   String status) throws SQLException {
+        if (versions == null) {
+            updateChunks(con, teacherId, status, Arrays.stream(appointmentIds).boxed().toList());
+            return new int[0];
+        }
+        List<Integer> matching = new ArrayList<>();
+        List<Integer> conflicts = new ArrayList<>();
+        for (int from = 0; from < appointmentIds.length; from += MAX_IDS_PER_UPDATE) {
+            int to = Math.min(from + MAX_IDS_PER_UPDATE, appointmentIds.length);
+            Map<Integer, StoredStatus> stored = new HashMap<>();
+            try (PreparedStatement stmt = con.prepareStatement(
+                     "SELECT id, status, version FROM appointments WHERE teacher_id = ? AND id IN (" +
+                     String.join(", ", Collections.nCopies(to - from, "?")) + ") FOR UPDATE")) {
+                stmt.setInt(1, teacherId);
+                for (int i = from; i < to; i++) {
+                    stmt.setInt(2 + i - from, appointmentIds[i]);
+                }
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    stored.put(rs.getInt("id"), new StoredStatus(rs.getString("status"), rs.getInt("version")));
+                }
+            }
+            for (int i = from; i < to; i++) {
+                StoredStatus current = stored.get(appointmentIds[i]);
+                if (current == null) {
+                    conflicts.add(appointmentIds[i]);
+                } else if (!current.status().equals(status)) {
+                    (current.version() == versions[i] ? matching : conflicts).add(appointmentIds[i]);
+                }
+            }
+        }
+        updateChunks(con, teacherId, status, matching);
+        return conflicts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private record StoredStatus(String status, int version) {
+    }
+
+    private static void updateChunks(Connection con, int teacherId, String status, List<Integer> ids)
+            throws SQLException {
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_UPDATE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_UPDATE, ids.size()));
+            String sql = "UPDATE appointments SET status = ?, version = version + 1 " +
+                         "WHERE teacher_id = ? AND status <> ? AND id IN (" +
+                         String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            try (PreparedStatement stmt = con.prepareStatement(sql)) {
+                stmt.setString(1, status);
+                stmt.setInt(2, teacherId);
+                stmt.setString(3, status);
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setInt(4 + i, chunk.get(i));
+                }
+                stmt.executeUpdate();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JdbcTeacherRepository implements TeacherRepository {
+    @Override
+    public List<Teacher> findByStatus(String status) throws SQLException {
+        List<Teacher> teachers = new ArrayList<>();
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement("SELECT id, name FROM teachers WHERE status = ?")) {
+            stmt.setString(1, status);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                teachers.add(new Teacher(rs.getInt("id"), rs.getString("name"), status));
+            }
+        }
+        return teachers;
+    }
+
+    @Override
+    public void updateStatus(int teacherId, String status) throws SQLException {
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement("UPDATE teachers SET status = ? WHERE id = ?")) {
+            stmt.setString(1, status);
+            stmt.setInt(2, teacherId);
+            stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public WeeklyAvailability findAvailability(int teacherId) throws SQLException {
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement("SELECT slots FROM teacher_availability WHERE teacher_id = ?")) {
+            stmt.setInt(1, teacherId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? WeeklyAvailability.fromBytes(rs.getBytes("slots")) : WeeklyAvailability.NONE;
+        }
+    }
+
+    // 88 bytes per teacher, so the whole table is small enough to read at once
+    @Override
+    public Map<Integer, WeeklyAvailability> findAllAvailability() throws SQLException {
+        Map<Integer, WeeklyAvailability> availability = new HashMap<>();
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement("SELECT teacher_id, slots FROM teacher_availability")) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                availability.put(rs.getInt("teacher_id"), WeeklyAvailability.fromBytes(rs.getBytes("slots")));
+            }
+        }
+        return availability;
+    }
+
+    @Override
+    public void saveAvailability(int teacherId, WeeklyAvailability availability) throws SQLException {
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(
+                 "INSERT INTO teacher_availability (teacher_id, slots) VALUES (?, ?) " +
+                 "ON DUPLICATE KEY UPDATE slots = VALUES(slots)")) {
+            stmt.setInt(1, teacherId);
+            stmt.setBytes(2, availability.toBytes());
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+import java.io.IOException;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+public class JdbcUserRepository implements UserRepository {
+    private static final int EXACT_OFFSET_LIMIT = 10_000;
+
+    // Served by the unique (name, role) index
+    @Override
+    public Credentials findCredentials(String name, String role) throws SQLException {
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(
+                 "SELECT id, password_hash, password FROM users WHERE name = ? AND role = ?")) {
+            stmt.setString(1, name);
+            stmt.setString(2, role);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? new Credentials(rs.getInt("id"), rs.getString("password_hash"), rs.getString("password")) : null;
+        }
+    }
+
+    @Override
+    public void setPasswordHash(int id, String passwordHash) throws SQLException {
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement("UPDATE users SET password_hash = ?, password = '' WHERE id = ?")) {
+            stmt.setString(1, passwordHash);
+            stmt.setInt(2, id);
+            stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public List<User> findPageAfter(int afterId, int limit) throws SQLException {
+        List<User> rows = new ArrayList<>(limit);
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(
+                 "SELECT id, name, role, status, version FROM users WHERE id > ? ORDER BY id LIMIT ?")) {
+            stmt.setInt(1, afterId);
+            stmt.setInt(2, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                rows.add(toUser(rs));
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public int exactOffsetLimit() {
+        return EXACT_OFFSET_LIMIT;
+    }
+
+    // LIMIT 1 OFFSET n still walks n index entries, so beyond EXACT_OFFSET_LIMIT the target is
+    // interpolated instead: ids are assumed spread evenly between MIN(id) and MAX(id), which both
+    // come straight off the primary key, and the nearest existing id at or after the guess is found
+    // with one index seek. The id returned exists but its position is a guess: where ids are not
+    // spread evenly it can be well before or after the row asked for, and a page started from it can
+    // overlap its neighbours or leave a gap. UserTableModel treats such pages as approximate.
+    @Override
+    public Integer idAtOffsetAfter(int afterId, int offset) throws SQLException {
+        long total = offset > EXACT_OFFSET_LIMIT ? estimateCount() : 0;
+        try (Connection con = Database.getConnection()) {
+            if (total > 1) {
+                try (PreparedStatement stmt = con.prepareStatement("SELECT MIN(id), MAX(id) FROM users")) {
+                    ResultSet rs = stmt.executeQuery();
+                    if (rs.next() && rs.getObject(1) != null) {
+                        long min = rs.getLong(1);
+                        long max = rs.getLong(2);
+                        long from = Math.max(afterId + 1L, min);
+                        long target = from + offset * (max - min + 1) / total;
+                        return target > max ? null : firstIdFrom(con, (int) target);
+                    }
+                }
+            }
+            try (PreparedStatement stmt = con.prepareStatement(
+                     "SELECT id FROM users WHERE id > ? ORDER BY id LIMIT 1 OFFSET ?")) {
+                stmt.setInt(1, afterId);
+                stmt.setInt(2, offset);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getInt("id") : null;
+            }
+        }
+    }
+
+    private static Integer firstIdFrom(Connection con, int id) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT id FROM users WHERE id >= ? ORDER BY id LIMIT 1")) {
+            stmt.setInt(1, id);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt("id") : null;
+        }
+    }
+
+    // InnoDB's table statistics: cheap, but only approximate
+    @Override
+    public long estimateCount() throws SQLException {
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(
+                 "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'users'")) {
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // A range scan on uq_users_name_role, whose (name, role) order also serves the ORDER BY, so the
+    // LIMIT stops the scan early. The column's collation makes the match case-insensitive.
+    @Override
+    public List<User> findByNamePrefix(String prefix, int limit) throws SQLException {
+        List<User> rows = new ArrayList<>(Math.min(limit, 256));
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(
+                 "SELECT id, name, role, status, version FROM users WHERE name LIKE ? ESCAPE '!' ORDER BY name, role LIMIT ?")) {
+            stmt.setString(1, prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%");
+            stmt.setInt(2, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                rows.add(toUser(rs));
+            }
+        }
+        return rows;
+    }
+
+    // Integer.MIN_VALUE makes Connector/J stream the result row by row instead of buffering it;
+    // the connection can run nothing else until the result set is closed
+    @Override
+    public void streamUsers(DataExport.RowSink<User> sink) throws SQLException, IOException {
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement("SELECT id, name, role, status, version FROM users ORDER BY id",
+                 ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    sink.accept(toUser(rs));
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean insert(NewUser user) throws SQLException {
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(INSERT)) {
+            bind(stmt, user);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLIntegrityConstraintViolationException ex) {
+            return false;
+        }
+    }
+
+    // A rejected row fails the batch in a way that depends on the driver settings: without
+    // rewriteBatchedStatements Connector/J runs the remaining rows and marks the failed one, with it
+    // the whole multi-row INSERT is rolled back. Either way the rows not reported as inserted are
+    // retried one at a time, so only the offending rows are left out.
+    @Override
+    public boolean[] insertAll(List<NewUser> users, int batchSize) throws SQLException {
+        boolean[] inserted = new boolean[users.size()];
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(INSERT)) {
+            con.setAutoCommit(false);
+            try {
+                for (int from = 0; from < users.size(); from += batchSize) {
+                    int to = Math.min(users.size(), from + batchSize);
+                    for (int i = from; i < to; i++) {
+                        bind(stmt, users.get(i));
+                        stmt.addBatch();
+                    }
+                    int[] counts;
+                    try {
+                        counts = stmt.executeBatch();
+                    } catch (BatchUpdateException ex) {
+                        counts = ex.getUpdateCounts();
+                        stmt.clearBatch();
+                    }
+                    for (int i = from; i < to; i++) {
+                        int count = i - from < counts.length ? counts[i - from] : Statement.EXECUTE_FAILED;
+                        inserted[i] = count > 0 || count == Statement.SUCCESS_NO_INFO;
+                    }
+                    for (int i = from; i < to; i++) {
+                        if (!inserted[i]) {
+                            bind(stmt, users.get(i));
+                            try {
+                                inserted[i] = stmt.executeUpdate() > 0;
+                            } catch (SQLIntegrityConstraintViolationException ex) {
+                                // Duplicate id or login; reported to the caller as not inserted
+                            }
+                        }
+                    }
+                    con.commit();
+                }
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        }
+        return inserted;
+    }
+
+    private static final String INSERT =
+        "INSERT INTO users (id, name, role, password, password_hash, status) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static void bind(PreparedStatement stmt, NewUser user) throws SQLException {
+        if (user.id() == null) {
+            stmt.setNull(1, Types.INTEGER); // AUTO_INCREMENT picks the id
+        } else {
+            stmt.setInt(1, user.id());
+        }
+        stmt.setString(2, user.name());
+        stmt.setString(3, user.role());
+        stmt.setString(4, ""); // the legacy plaintext column, never written now
+        stmt.setString(5, user.passwordHash());
+        stmt.setString(6, user.status());
+    }
+
+    // A single compare-and-set UPDATE; the row is only read back when it did not match
+    @Override
+    public UpdateResult update(int id, int version, String name, String role) throws SQLException {
+        try (Connection con = Database.getConnection()) {
+            try (PreparedStatement stmt = con.prepareStatement(
+                     "UPDATE users SET name = ?, role = ?, version = version + 1 WHERE id = ? AND version = ?")) {
+                stmt.setString(1, name);
+                stmt.setString(2, role);
+                stmt.setInt(3, id);
+                stmt.setInt(4, version);
+                if (stmt.executeUpdate() > 0) {
+                    return new UpdateResult(true, null);
+                }
+            }
+            try (PreparedStatement stmt = con.prepareStatement(
+                     "SELECT id, name, role, status, version FROM users WHERE id = ?")) {
+                stmt.setInt(1, id);
+                ResultSet rs = stmt.executeQuery();
+                return new UpdateResult(false, rs.next() ? toUser(rs) : null);
+            }
+        }
+    }
+
+    @Override
+    public boolean delete(int id) throws SQLException {
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement("DELETE FROM users WHERE id=?")) {
+            stmt.setInt(1, id);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    private static User toUser(ResultSet rs) throws SQLException {
+        return new User(rs.getInt("id"), rs.getString("name"), rs.getString("role"), rs.getString("status"),
+            rs.getInt("version"));
+    }
+}
@@ -0,0 +1,33 @@
+import java.util.Arrays;
+
+// A write accepted by WriteJournal and applied to the database later. Applying one twice has the
+// same effect as applying it once: requests carry a unique key, and a row already in the status
+// being set is left alone rather than failing its version check.
+public sealed interface JournalWrite {
+    // A pending appointment request; key is stored in appointments.request_key
+    record Request(String key, int studentId, int teacherId, TimeSlot slot) implements JournalWrite {
+    }
+
+    // Approve or decline the ids that belong to the teacher, as AppointmentRepository.updateStatus;
+    // versions is null for changes journaled before appointments had versions
+    record StatusChange(int teacherId, int[] appointmentIds, int[] versions, String status) implements JournalWrite {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StatusChange that && teacherId == that.teacherId
+                && Arrays.equals(appointmentIds, that.appointmentIds) && Arrays.equals(versions, that.versions)
+                && status.equals(that.status);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * teacherId + Arrays.hashCode(appointmentIds)) + Arrays.hashCode(versions))
+                + status.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "StatusChange[teacherId=" + teacherId + ", appointmentIds=" + Arrays.toString(appointmentIds)
+                + ", versions=" + Arrays.toString(versions) + ", status=" + status + "]";
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free latency histogram with log-linear buckets in microseconds: exact below 16 us, then
+// eight buckets per power of two, so percentiles are within 12.5% of the true value. Recording
+// is a couple of atomic increments, cheap enough for every database call.
+public class LatencyHistogram {
+    private static final int LINEAR = 16;
+    private static final int SUB_BUCKETS = 8;
+    private static final int MAX_EXPONENT = 40; // about 12 days in microseconds
+    private static final int BUCKETS = LINEAR + (MAX_EXPONENT - 4 + 1) * SUB_BUCKETS;
+
+    public record Snapshot(long count, long errors, double p50Millis, double p99Millis, double maxMillis) {
+        @Override
+        public String toString() {
+            return String.format("n=%d errors=%d p50=%.2fms p99=%.2fms max=%.2fms",
+                count, errors, p50Millis, p99Millis, maxMillis);
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(micros));
+        count.increment();
+        maxNanos.accumulate(nanos);
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    // Concurrent recording may make the percentiles lag the count by a few samples
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        double max = maxNanos.get() / 1e6;
+        return new Snapshot(count.sum(), errors.sum(),
+            Math.min(max, percentileMicros(copy, total, 0.50) / 1000.0),
+            Math.min(max, percentileMicros(copy, total, 0.99) / 1000.0), max);
+    }
+
+    private static long percentileMicros(long[] buckets, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(buckets.length - 1);
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        int exponent = Math.min(MAX_EXPONENT, 63 - Long.numberOfLeadingZeros(micros));
+        if (exponent == MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) ((micros >>> (exponent - 3)) & (SUB_BUCKETS - 1));
+        return LINEAR + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int exponent = 4 + (bucket - LINEAR) / SUB_BUCKETS;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        long width = 1L << (exponent - 3);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+}
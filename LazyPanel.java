@@ -0,0 +1,6 @@
+// A MainFrame card that runs no queries until it is first shown
+public interface LazyPanel {
+    // Called once on the EDT when the panel first becomes visible. Starts the initial loads and
+    // runs onReady once their results (or an error) are on screen.
+    void firstShown(Runnable onReady);
+}
@@ -1,5 +1,5 @@
 import java.awt.*;
-import java.sql.*;
+import java.util.concurrent.RejectedExecutionException;
 import javax.swing.*;
 
 public class Login extends JFrame {
@@ -132,33 +132,31 @@ public class Login extends JFrame {
             return;
         }
 
-        try (Connection con = Database.getConnection();
-             PreparedStatement stmt = con.prepareStatement("SELECT id FROM users WHERE name = ? AND password = ? AND role = ?")) {
-            stmt.setString(1, username);
-            stmt.setString(2, password);
-            stmt.setString(3, role);
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                int userId = rs.getInt("id");
+        btnLogin.setEnabled(false);
+        AsyncDb.submit("login", () -> AuthService.login(username, password, role), session -> {
+            btnLogin.setEnabled(true);
+            if (session != null) {
                 JOptionPane.showMessageDialog(this, "Login Successful!");
 
-                mainFrame.initializePanels(role, userId);
+                // Opens on the screen for the session's role
+                mainFrame.initializePanels(session);
                 mainFrame.setVisible(true);
                 dispose();
-
-                // Redirect Based on Role
-                mainFrame.showPanel(role);
             } else {
                 JOptionPane.showMessageDialog(this, "Invalid credentials. Please try again.", "Login Failed", JOptionPane.ERROR_MESSAGE);
             }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
+        }, ex -> {
+            btnLogin.setEnabled(true);
+            if (ex instanceof RejectedExecutionException) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Login Busy", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
             JOptionPane.showMessageDialog(this, "Database error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     public static void main(String[] args) {
+        EdtWatchdog.start();
         SwingUtilities.invokeLater(() -> {
             MainFrame mainFrame = new MainFrame();
             Login login = new Login(mainFrame);
@@ -1,9 +1,26 @@
 import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Logger;
 import javax.swing.*;
 
 public class MainFrame extends JFrame {
+    private static final Logger LOG = Logger.getLogger(MainFrame.class.getName());
+
+    // One card per role; only the signed-in role's card is ever built
+    private static final Map<String, Function<Session, JPanel>> PANEL_FACTORIES = Map.of(
+        "Admin", AdminPanel::new,
+        "Student", StudentPanel::new,
+        "Teacher", TeacherPanel::new);
+
     private CardLayout cardLayout;
     private JPanel mainPanel;
+    private final Map<String, JPanel> builtPanels = new HashMap<>();
+    private Session session;
+    private long sessionStartedNanos;
 
     public MainFrame() {
         setTitle("School Schedule Manager");
@@ -17,23 +34,50 @@ public class MainFrame extends JFrame {
         add(mainPanel);
     }
 
-    public void initializePanels(String userRole, int userId) {
-        AdminPanel adminPanel = new AdminPanel();
-        StudentPanel studentPanel = new StudentPanel(userId);
-        TeacherPanel teacherPanel = new TeacherPanel(userId);
-
-        mainPanel.add(adminPanel, "Admin");
-        mainPanel.add(studentPanel, "Student");
-        mainPanel.add(teacherPanel, "Teacher");
-
-        showPanel(userRole);
+    // Time to first interactive screen is reported from here: the session exists and the
+    // "Login Successful" dialog has been dismissed
+    public void initializePanels(Session session) {
+        this.session = session;
+        this.sessionStartedNanos = System.nanoTime();
+        showPanel(session.role());
     }
 
+    // Builds the card on first use; a card's initial queries wait until it is actually on screen
     public void showPanel(String panelName) {
+        if (!builtPanels.containsKey(panelName)) {
+            if (session == null || !session.role().equals(panelName)) {
+                throw new IllegalArgumentException("No " + panelName + " screen for this session");
+            }
+            JPanel panel = PANEL_FACTORIES.get(panelName).apply(session);
+            builtPanels.put(panelName, panel);
+            // Listen before adding: a panel added to a visible frame is shown by the add itself
+            if (panel instanceof LazyPanel lazy) {
+                onFirstShow(panel, () -> lazy.firstShown(() -> reportInteractive(panelName)));
+            }
+            mainPanel.add(panel, panelName);
+        }
         cardLayout.show(mainPanel, panelName);
     }
 
+    private void reportInteractive(String panelName) {
+        LOG.info(String.format("%s screen interactive %d ms after login", panelName,
+            (System.nanoTime() - sessionStartedNanos) / 1_000_000));
+    }
+
+    private static void onFirstShow(JComponent component, Runnable action) {
+        component.addHierarchyListener(new HierarchyListener() {
+            @Override
+            public void hierarchyChanged(HierarchyEvent e) {
+                if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && component.isShowing()) {
+                    component.removeHierarchyListener(this);
+                    action.run();
+                }
+            }
+        });
+    }
+
     public static void main(String[] args) {
+        EdtWatchdog.start();
         SwingUtilities.invokeLater(() -> {
             MainFrame mainFrame = new MainFrame();
             Login login = new Login(mainFrame);
@@ -0,0 +1,90 @@
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide latency histograms, one per named operation. AsyncDb names each database call
+// ("teacher.appointments", "login", ...) and records its total time, its time on the EDT
+// afterwards (".ui"), and through DbTracing its statement (".execute") and result-set (".fetch")
+// times. "db.connect" and "edt.stall" are recorded by Database and EdtWatchdog.
+//
+// Alongside the histograms are plain event counters and the appointments this process last read
+// as pending. DashboardPanel samples all of them; none costs a query.
+public final class Metrics {
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<Integer, Integer> PENDING_TEACHER_BY_ID = new ConcurrentHashMap<>();
+    private static final ThreadLocal<String> OPERATION = new ThreadLocal<>();
+
+    private Metrics() {
+    }
+
+    public static void record(String name, long nanos) {
+        histogram(name).record(nanos);
+    }
+
+    public static void recordError(String name) {
+        histogram(name).recordError();
+    }
+
+    public static void count(String name) {
+        COUNTERS.computeIfAbsent(name, n -> new LongAdder()).increment();
+    }
+
+    public static void count(String name, long n) {
+        COUNTERS.computeIfAbsent(name, k -> new LongAdder()).add(n);
+    }
+
+    // Sorted by name
+    public static Map<String, Long> counters() {
+        Map<String, Long> counters = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> counters.put(name, counter.sum()));
+        return counters;
+    }
+
+    // Rows this process has just read, e.g. an AppointmentFeed delta or a teacher's load; a row
+    // counts as pending until a later read shows it in another status
+    public static void observeAppointments(Collection<Appointment> rows) {
+        for (Appointment row : rows) {
+            if (row.status().equals("pending")) {
+                PENDING_TEACHER_BY_ID.put(row.id(), row.teacherId());
+            } else {
+                PENDING_TEACHER_BY_ID.remove(row.id());
+            }
+        }
+    }
+
+    // Teacher id to pending appointments, among the rows this process has read
+    public static Map<Integer, Long> pendingByTeacher() {
+        Map<Integer, Long> pending = new TreeMap<>();
+        PENDING_TEACHER_BY_ID.values().forEach(teacherId -> pending.merge(teacherId, 1L, Long::sum));
+        return pending;
+    }
+
+    // The operation running on this thread, as set by AsyncDb
+    public static String currentOperation() {
+        String operation = OPERATION.get();
+        return operation != null ? operation : "unnamed";
+    }
+
+    static void setCurrentOperation(String operation) {
+        if (operation == null) {
+            OPERATION.remove();
+        } else {
+            OPERATION.set(operation);
+        }
+    }
+
+    // Sorted by name
+    public static Map<String, LatencyHistogram.Snapshot> snapshot() {
+        Map<String, LatencyHistogram.Snapshot> snapshot = new TreeMap<>();
+        HISTOGRAMS.forEach((name, histogram) -> snapshot.put(name, histogram.snapshot()));
+        return snapshot;
+    }
+
+    private static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = HISTOGRAMS.get(name);
+        return histogram != null ? histogram : HISTOGRAMS.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+}
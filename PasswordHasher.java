@@ -0,0 +1,68 @@
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// Salted PBKDF2 hashes, stored as "pbkdf2-sha256$<iterations>$<salt>$<hash>" so the cost can be
+// raised later without invalidating existing hashes. Deliberately slow: call it from
+// AuthService's hashing pool, never from the event dispatch thread.
+public final class PasswordHasher {
+    public static final int ITERATIONS = Integer.getInteger("schedule.auth.pbkdf2Iterations", 210_000);
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private PasswordHasher() {
+    }
+
+    public static String hash(String password) {
+        return hash(password, ITERATIONS);
+    }
+
+    // A hash at another cost, e.g. UserImport's cheaper one; needsRehash reports it until redone
+    public static String hash(String password, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + '$' + iterations + '$' + base64.encodeToString(salt) + '$'
+            + base64.encodeToString(derive(password, salt, iterations, HASH_BITS));
+    }
+
+    // False for malformed hashes as well as wrong passwords
+    public static boolean verify(String password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || !parts[0].equals(PREFIX)) {
+            return false;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, derive(password, salt, iterations, expected.length * 8));
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    // True when the hash was made with a different cost than the one configured now
+    public static boolean needsRehash(String stored) {
+        String[] parts = stored.split("\\$");
+        return parts.length != 4 || !parts[0].equals(PREFIX) || !parts[1].equals(String.valueOf(ITERATIONS));
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations, int bits) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, bits);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ALGORITHM + " is not available", ex);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
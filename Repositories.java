@@ -0,0 +1,97 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Chooses the storage engine once per process: MySQL through Database (the default) or
+// InMemoryStore with -Dschedule.storage=memory. Appointment requests and status changes go through
+// a WriteJournal in front of it when one is open.
+public class Repositories {
+    private static final Logger LOG = Logger.getLogger(Repositories.class.getName());
+    private static final UserRepository USERS;
+    private static final TeacherRepository TEACHERS;
+    private static final AppointmentRepository APPOINTMENTS;
+    private static final InMemoryStore MEMORY_STORE;
+    private static final WriteJournal JOURNAL;
+
+    static {
+        String storage = System.getProperty("schedule.storage", "jdbc");
+        switch (storage) {
+            case "jdbc":
+                migrateSchema();
+                USERS = new JdbcUserRepository();
+                TEACHERS = new JdbcTeacherRepository();
+                APPOINTMENTS = new JdbcAppointmentRepository();
+                MEMORY_STORE = null;
+                break;
+            case "memory":
+                InMemoryStore store = new InMemoryStore();
+                seedAdmin(store);
+                USERS = store;
+                TEACHERS = store;
+                APPOINTMENTS = store;
+                MEMORY_STORE = store;
+                break;
+            default:
+                throw new IllegalStateException("Unknown schedule.storage '" + storage + "', expected jdbc or memory");
+        }
+        JOURNAL = openJournal(storage.equals("jdbc"));
+    }
+
+    public static UserRepository users() {
+        return USERS;
+    }
+
+    public static TeacherRepository teachers() {
+        return TEACHERS;
+    }
+
+    public static AppointmentRepository appointments() {
+        return APPOINTMENTS;
+    }
+
+    // The backing store when running with -Dschedule.storage=memory, for seeding; null otherwise
+    public static InMemoryStore memoryStore() {
+        return MEMORY_STORE;
+    }
+
+    // The write-behind journal for appointment writes, or null when writes go straight to storage
+    public static WriteJournal journal() {
+        return JOURNAL;
+    }
+
+    // -Dschedule.journal.enabled defaults to true with MySQL and false in memory, where writes never
+    // wait. A journal that cannot be opened is logged and writes go straight to storage instead.
+    private static WriteJournal openJournal(boolean byDefault) {
+        if (!Boolean.parseBoolean(System.getProperty("schedule.journal.enabled", String.valueOf(byDefault)))) {
+            return null;
+        }
+        try {
+            return WriteJournal.open(APPOINTMENTS);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Could not open the write journal; appointment writes will not be journaled", ex);
+            return null;
+        }
+    }
+
+    // Skipped with -Dschedule.db.migrate=false, e.g. when the database account has no DDL rights
+    // and migrations are applied separately
+    private static void migrateSchema() {
+        if (Boolean.parseBoolean(System.getProperty("schedule.db.migrate", "true"))) {
+            try {
+                SchemaMigrations.migrate();
+            } catch (SQLException ex) {
+                throw new IllegalStateException(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    // An empty in-memory store has nobody who can log in; -Dschedule.memory.admin=name:password adds one
+    private static void seedAdmin(InMemoryStore store) {
+        String admin = System.getProperty("schedule.memory.admin");
+        int colon = admin == null ? -1 : admin.indexOf(':');
+        if (colon > 0) {
+            store.addUser(new User(1, admin.substring(0, colon), "Admin", "Active", 0), admin.substring(colon + 1));
+        }
+    }
+}
@@ -0,0 +1,504 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLTransientException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Headless mode: the scheduling operations as a JSON API on the JDK's built-in HTTP server, one
+// virtual thread per request. Every request shares this process's connection pool, caches and
+// write journal, so clients need no database credentials and the database sees one pool however
+// many people are signed in. Start it with `java ScheduleServer`; -Dschedule.server.host (default
+// 127.0.0.1), -Dschedule.server.port (default 8080) and -Dschedule.server.backlog (default 1024)
+// set where it listens. It speaks plain HTTP, passwords and tokens included, so anything beyond
+// this machine must reach it through a TLS-terminating reverse proxy. The endpoints are listed in
+// the README.
+//
+// Clients sign in with POST /api/login and send the returned token as "Authorization: Bearer
+// <token>". Errors are {"error": message} with 400 (bad input), 401 (not signed in), 403 (wrong
+// role), 404, 409 (taken, or changed by someone else since it was read) or 503 (pool or login queue
+// full; try again).
+public final class ScheduleServer {
+    private static final Logger LOG = Logger.getLogger(ScheduleServer.class.getName());
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int MAX_PAGE = 1000;
+    private static final long MAX_RANGE_DAYS = 92;
+    private static final Set<String> ROLES = Set.of("Admin", "Teacher", "Student");
+    private static final Set<String> DECISIONS = Set.of("approved", "declined");
+    private static final Pattern USER_PATH = Pattern.compile("(/api/users/)(\\d+)");
+
+    private final HttpServer server;
+    private final Map<String, Route> routes = Map.ofEntries(
+        Map.entry("GET /api/health", new Route("http.health", call -> ok(Map.of("status", "ok")))),
+        Map.entry("POST /api/login", new Route("http.login", this::login)),
+        Map.entry("POST /api/logout", new Route("http.logout", this::logout)),
+        Map.entry("GET /api/teachers", new Route("http.teachers", this::teachers)),
+        Map.entry("GET /api/appointments", new Route("http.appointments", this::appointments)),
+        Map.entry("POST /api/appointments", new Route("http.request", this::requestAppointment)),
+        Map.entry("POST /api/appointments/status", new Route("http.setStatus", this::setStatus)),
+        Map.entry("GET /api/users", new Route("http.users", this::users)),
+        Map.entry("POST /api/users", new Route("http.addUser", this::addUser)),
+        Map.entry("PUT /api/users/*", new Route("http.updateUser", this::updateUser)),
+        Map.entry("DELETE /api/users/*", new Route("http.deleteUser", this::deleteUser)));
+
+    private record Route(String operation, Endpoint endpoint) {
+    }
+
+    private record Response(int status, Object body) {
+    }
+
+    @FunctionalInterface
+    private interface Endpoint {
+        Response handle(Call call) throws Exception;
+    }
+
+    // A signed-in user asking for something their role may not do
+    private static final class ForbiddenException extends SecurityException {
+        ForbiddenException(String message) {
+            super(message);
+        }
+    }
+
+    public ScheduleServer(InetSocketAddress address, int backlog) throws IOException {
+        server = HttpServer.create(address, backlog);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/", this::handle);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Repositories.users(); // migrate the schema and open the write journal before taking requests
+        ScheduleServer server = new ScheduleServer(new InetSocketAddress(
+            System.getProperty("schedule.server.host", "127.0.0.1"), Integer.getInteger("schedule.server.port", 8080)),
+            Integer.getInteger("schedule.server.backlog", 1024));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(2), "schedule-server-shutdown"));
+        server.start();
+        LOG.info("Schedule server listening on " + server.address());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Waits up to delaySeconds for requests in progress
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long started = System.nanoTime();
+        String path = exchange.getRequestURI().getPath();
+        String id = null;
+        Matcher item = USER_PATH.matcher(path);
+        if (item.matches()) {
+            path = item.group(1) + "*";
+            id = item.group(2);
+        }
+        Route route = routes.get(exchange.getRequestMethod() + " " + path);
+        String operation = route == null ? "http.unknown" : route.operation();
+        Response response;
+        Metrics.setCurrentOperation(operation);
+        try {
+            if (route == null) {
+                String suffix = " " + path;
+                response = routes.keySet().stream().anyMatch(key -> key.endsWith(suffix))
+                    ? error(405, "Method not allowed") : error(404, "Not found");
+            } else {
+                response = route.endpoint().handle(new Call(exchange, id));
+            }
+        } catch (ForbiddenException ex) {
+            response = error(403, ex.getMessage());
+        } catch (SecurityException ex) {
+            response = error(401, ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            response = error(400, ex.getMessage());
+        } catch (SQLTransientException | RejectedExecutionException ex) {
+            response = error(503, "The server is busy; try again shortly");
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, operation + " failed", ex);
+            response = error(500, "Internal error");
+        } finally {
+            Metrics.setCurrentOperation(null);
+        }
+        try {
+            send(exchange, response);
+        } finally {
+            Metrics.record(operation, System.nanoTime() - started);
+            if (response.status() >= 500) {
+                Metrics.recordError(operation);
+            }
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        if (response.status() == 503) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+        }
+        if (response.body() == null) {
+            exchange.sendResponseHeaders(response.status(), -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = Json.write(response.body()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // Endpoints
+
+    // {name, password, role} -> {token, userId, role}
+    private Response login(Call call) throws Exception {
+        Map<String, Object> body = call.body();
+        Session session = AuthService.login(call.string(body, "name"), call.string(body, "password"),
+            call.string(body, "role"));
+        if (session == null) {
+            return error(401, "Invalid name, password or role");
+        }
+        return ok(Map.of("token", session.token(), "userId", session.userId(), "role", session.role()));
+    }
+
+    private Response logout(Call call) {
+        AuthService.logout(call.session());
+        return new Response(204, null);
+    }
+
+    // ?q=name prefix&limit=50 -> active teachers, as the request form's picker shows them
+    private Response teachers(Call call) throws Exception {
+        call.session();
+        int limit = call.limitParam(50);
+        List<Map<String, Object>> teachers = new ArrayList<>();
+        for (Teacher teacher : TeacherDirectory.active().names().startingWith(call.param("q", ""), limit)) {
+            teachers.add(Map.of("id", teacher.id(), "name", teacher.name()));
+        }
+        return ok(teachers);
+    }
+
+    // The caller's own appointments: ?from=&to= (ISO date or date-time, at most 92 days apart) for
+    // a calendar range, otherwise everything changed since ?since= (epoch millis; omit for all)
+    private Response appointments(Call call) throws Exception {
+        Session session = call.session("Teacher", "Student");
+        boolean teacher = session.role().equals("Teacher");
+        AppointmentRepository repository = Repositories.appointments();
+        List<Appointment> found;
+        String from = call.param("from", null);
+        if (from != null) {
+            LocalDateTime start = dateTime(from);
+            LocalDateTime end = dateTime(call.param("to", start.plusWeeks(1).toString()));
+            if (!end.isAfter(start) || Duration.between(start, end).toDays() > MAX_RANGE_DAYS) {
+                throw new IllegalArgumentException("to must be after from and at most " + MAX_RANGE_DAYS + " days later");
+            }
+            found = teacher ? repository.findForTeacherBetween(session.userId(), start, end)
+                : repository.findForStudentBetween(session.userId(), start, end);
+        } else {
+            String since = call.param("since", null);
+            Timestamp changedSince = since == null ? null : new Timestamp(call.longParam("since"));
+            found = teacher ? repository.changesForTeacher(session.userId(), changedSince)
+                : repository.changesForStudent(session.userId(), changedSince);
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(found.size());
+        for (Appointment a : found) {
+            rows.add(toJson(a));
+        }
+        return ok(rows);
+    }
+
+    // {teacherId, time} -> 201 {booked: true}, or 409 {booked: false, suggestion} with the nearest free slot
+    private Response requestAppointment(Call call) throws Exception {
+        Session session = call.session("Student");
+        Map<String, Object> body = call.body();
+        int teacherId = call.integer(body, "teacherId");
+        TimeSlot slot = TimeSlot.parse(call.string(body, "time"));
+        if (!slot.start().isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("The time must be in the future");
+        }
+        if (TeacherDirectory.active().teachers().stream().noneMatch(t -> t.id() == teacherId)) {
+            throw new IllegalArgumentException("No active teacher with id " + teacherId);
+        }
+        BookingService.Result result = BookingService.request(session.userId(), teacherId, slot);
+        if (result.booked()) {
+            return new Response(201, Map.of("booked", true));
+        }
+        return new Response(409, Map.of("booked", false, "suggestion", result.suggestion().format()));
+    }
+
+    // {ids: [...], versions: [...], status: "approved" | "declined"}, for the calling teacher's
+    // appointments, each at the version the client last read -> 204, or 409 {conflicts: [ids]} for
+    // those someone else changed first (the rest are updated). With the write journal the versions
+    // are checked when the change is applied, and the client sees the outcome on its next read.
+    private Response setStatus(Call call) throws Exception {
+        Session session = call.session("Teacher");
+        Map<String, Object> body = call.body();
+        String status = call.string(body, "status");
+        if (!DECISIONS.contains(status)) {
+            throw new IllegalArgumentException("status must be approved or declined");
+        }
+        int[] ids = call.integers(body, "ids");
+        int[] versions = call.integers(body, "versions");
+        if (ids.length == 0 || versions.length != ids.length) {
+            throw new IllegalArgumentException("ids must be a non-empty array with one entry in versions for each");
+        }
+        WriteJournal journal = Repositories.journal();
+        int[] conflicts = new int[0];
+        if (journal != null) {
+            journal.setStatus(session.userId(), ids, versions, status);
+        } else {
+            conflicts = Repositories.appointments().updateStatus(session.userId(), ids, versions, status);
+        }
+        if (status.equals("declined")) {
+            BookingService.invalidate(session.userId());
+        }
+        return conflicts.length == 0 ? new Response(204, null)
+            : new Response(409, Map.of("conflicts", Arrays.stream(conflicts).boxed().toList()));
+    }
+
+    // ?q=name prefix for a search, otherwise a page in id order: ?after=id&limit=200 -> {users, next}
+    private Response users(Call call) throws Exception {
+        call.session("Admin");
+        int limit = call.limitParam(200);
+        String prefix = call.param("q", "");
+        List<User> users = prefix.isEmpty()
+            ? Repositories.users().findPageAfter(call.intParam("after", Integer.MIN_VALUE), limit)
+            : Repositories.users().findByNamePrefix(prefix, limit);
+        List<Map<String, Object>> rows = new ArrayList<>(users.size());
+        for (User user : users) {
+            rows.add(Map.of("id", user.id(), "name", user.name(), "role", user.role(), "status", user.status(),
+                "version", user.version()));
+        }
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("users", rows);
+        page.put("next", prefix.isEmpty() && users.size() == limit ? users.get(users.size() - 1).id() : null);
+        return ok(page);
+    }
+
+    // {id (optional), name, role, password} -> 201, or 409 when the id or name is taken. New users
+    // start Inactive, as from the Add User screen.
+    private Response addUser(Call call) throws Exception {
+        call.session("Admin");
+        Map<String, Object> body = call.body();
+        Integer id = body.get("id") == null ? null : call.integer(body, "id");
+        String name = call.string(body, "name").trim();
+        String role = role(call.string(body, "role"));
+        String password = call.string(body, "password");
+        if (name.isEmpty() || password.isEmpty()) {
+            throw new IllegalArgumentException("name and password must not be empty");
+        }
+        String hash = AuthService.hashPassword(password);
+        boolean created = Repositories.users().insert(new UserRepository.NewUser(id, name, role, hash, "Inactive"));
+        return created ? new Response(201, Map.of("created", true)) : error(409, "That id or name is already taken");
+    }
+
+    // {name, role, version} with the version last read -> 204, or 409 {error, current} with the user
+    // as someone else has since saved them
+    private Response updateUser(Call call) throws Exception {
+        call.session("Admin");
+        Map<String, Object> body = call.body();
+        String name = call.string(body, "name").trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("name must not be empty");
+        }
+        UserRepository.UpdateResult result = Repositories.users().update(call.id(), call.integer(body, "version"),
+            name, role(call.string(body, "role")));
+        if (result.updated()) {
+            return new Response(204, null);
+        }
+        User current = result.current();
+        if (current == null) {
+            return error(404, "No user with id " + call.id());
+        }
+        return new Response(409, Map.of("error", "The user was changed by someone else", "current",
+            Map.of("id", current.id(), "name", current.name(), "role", current.role(), "status", current.status(),
+                "version", current.version())));
+    }
+
+    private Response deleteUser(Call call) throws Exception {
+        call.session("Admin");
+        return Repositories.users().delete(call.id()) ? new Response(204, null) : error(404, "No user with id " + call.id());
+    }
+
+    // Helpers
+
+    private static Response ok(Object body) {
+        return new Response(200, body);
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, Map.of("error", message == null ? "Error" : message));
+    }
+
+    private static String role(String role) {
+        if (!ROLES.contains(role)) {
+            throw new IllegalArgumentException("role must be one of " + ROLES);
+        }
+        return role;
+    }
+
+    private static LocalDateTime dateTime(String text) {
+        try {
+            return text.length() == 10 ? LocalDate.parse(text).atStartOfDay() : LocalDateTime.parse(text);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Expected an ISO date or date-time, got " + text);
+        }
+    }
+
+    private static Map<String, Object> toJson(Appointment a) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", a.id());
+        json.put("teacherId", a.teacherId());
+        json.put("studentId", a.studentId());
+        json.put("teacherName", a.teacherName());
+        json.put("studentName", a.studentName());
+        json.put("time", a.time());
+        json.put("start", a.slot() == null ? null : a.slot().start().toString());
+        json.put("end", a.slot() == null ? null : a.slot().end().toString());
+        json.put("status", a.status());
+        json.put("updatedAt", a.updatedAt() == null ? null : a.updatedAt().getTime());
+        json.put("version", a.version());
+        return json;
+    }
+
+    // One request: its query parameters, JSON body and bearer session, each read when first needed
+    private static final class Call {
+        private final HttpExchange exchange;
+        private final String id;
+        private Map<String, String> params;
+
+        Call(HttpExchange exchange, String id) {
+            this.exchange = exchange;
+            this.id = id;
+        }
+
+        // The bearer token's session, which must have one of the roles when any are given
+        Session session(String... roles) {
+            String header = exchange.getRequestHeaders().getFirst("Authorization");
+            if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+                throw new SecurityException("Sign in and send the token as \"Authorization: Bearer <token>\"");
+            }
+            Session session = AuthService.resume(header.substring(7).trim());
+            if (roles.length > 0 && !List.of(roles).contains(session.role())) {
+                throw new ForbiddenException("Only " + String.join(" or ", roles) + " users can do this.");
+            }
+            return session;
+        }
+
+        int id() {
+            return Integer.parseInt(id);
+        }
+
+        Map<String, Object> body() throws IOException {
+            byte[] bytes;
+            try (InputStream in = exchange.getRequestBody()) {
+                bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            }
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("The request body is larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            if (!(Json.parse(new String(bytes, StandardCharsets.UTF_8)) instanceof Map<?, ?> map)) {
+                throw new IllegalArgumentException("The request body must be a JSON object");
+            }
+            Map<String, Object> body = new HashMap<>();
+            map.forEach((key, value) -> body.put((String) key, value));
+            return body;
+        }
+
+        String string(Map<String, Object> body, String field) {
+            if (!(body.get(field) instanceof String value)) {
+                throw new IllegalArgumentException(field + " must be a string");
+            }
+            return value;
+        }
+
+        int integer(Map<String, Object> body, String field) {
+            if (!(body.get(field) instanceof Long value) || value != value.intValue()) {
+                throw new IllegalArgumentException(field + " must be an integer");
+            }
+            return value.intValue();
+        }
+
+        int[] integers(Map<String, Object> body, String field) {
+            if (!(body.get(field) instanceof List<?> list)) {
+                throw new IllegalArgumentException(field + " must be an array of integers");
+            }
+            int[] values = new int[list.size()];
+            for (int i = 0; i < values.length; i++) {
+                if (!(list.get(i) instanceof Long value) || value != value.intValue()) {
+                    throw new IllegalArgumentException(field + " must be an array of integers");
+                }
+                values[i] = value.intValue();
+            }
+            return values;
+        }
+
+        String param(String name, String fallback) {
+            if (params == null) {
+                params = new HashMap<>();
+                String query = exchange.getRequestURI().getRawQuery();
+                if (query != null) {
+                    for (String pair : query.split("&")) {
+                        int eq = pair.indexOf('=');
+                        String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                        String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+                        params.putIfAbsent(key, value);
+                    }
+                }
+            }
+            return params.getOrDefault(name, fallback);
+        }
+
+        int intParam(String name, int fallback) {
+            String value = param(name, null);
+            if (value == null) {
+                return fallback;
+            }
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException(name + " must be an integer");
+            }
+        }
+
+        // ?limit=, at least 1 and capped at MAX_PAGE
+        int limitParam(int fallback) {
+            int limit = intParam("limit", fallback);
+            if (limit < 1) {
+                throw new IllegalArgumentException("limit must be at least 1");
+            }
+            return Math.min(limit, MAX_PAGE);
+        }
+
+        long longParam(String name) {
+            try {
+                return Long.parseLong(param(name, ""));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException(name + " must be an integer");
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+// Brings the database schema up to date at startup. Each migration runs once and is recorded in
+// schema_migrations. MySQL commits DDL implicitly, so a migration that fails halfway cannot be
+// rolled back; the steps check information_schema first, so the whole migration can simply be
+// run again once the problem is fixed. The same checks let databases that already have some of
+// these columns or indexes (for example from the old sql/ scripts) be adopted as they are.
+public final class SchemaMigrations {
+    private static final Logger LOG = Logger.getLogger(SchemaMigrations.class.getName());
+    private static final String LOCK_NAME = "schedule_manager_migrations";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+    private static final int BACKFILL_BATCH = 1000;
+
+    @FunctionalInterface
+    private interface Step {
+        void apply(Connection con) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {
+    }
+
+    // Append only: never edit or reorder a migration once it has shipped
+    private static final List<Migration> MIGRATIONS = List.of(
+        new Migration(1, "base tables", con -> {
+            execute(con, "CREATE TABLE IF NOT EXISTS users ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "name VARCHAR(100) NOT NULL, "
+                + "password VARCHAR(255) NOT NULL DEFAULT '', "
+                + "role VARCHAR(20) NOT NULL, "
+                + "status VARCHAR(20) NOT NULL DEFAULT 'Active'"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+            execute(con, "CREATE TABLE IF NOT EXISTS teachers ("
+                + "id INT PRIMARY KEY, "
+                + "name VARCHAR(100) NOT NULL, "
+                + "status VARCHAR(20) NOT NULL DEFAULT 'Active'"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+            execute(con, "CREATE TABLE IF NOT EXISTS students ("
+                + "id INT PRIMARY KEY, "
+                + "name VARCHAR(100) NOT NULL"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+            execute(con, "CREATE TABLE IF NOT EXISTS appointments ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "student_id INT NOT NULL, "
+                + "teacher_id INT NOT NULL, "
+                + "time VARCHAR(100) NOT NULL, "
+                + "status VARCHAR(20) NOT NULL DEFAULT 'pending'"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+        }),
+        // Incremental appointment refresh: clients only fetch rows changed since their newest updated_at
+        new Migration(2, "appointment change tracking", con -> {
+            addColumnIfMissing(con, "appointments", "updated_at",
+                "TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)");
+        }),
+        // Parsed start/end used for double-booking detection; the free-text time column is kept for display
+        new Migration(3, "appointment time range", con -> {
+            addColumnIfMissing(con, "appointments", "start_at", "DATETIME NULL");
+            addColumnIfMissing(con, "appointments", "end_at", "DATETIME NULL");
+        }),
+        new Migration(4, "password hashes", con -> {
+            addColumnIfMissing(con, "users", "password_hash", "VARCHAR(255) NULL");
+        }),
+        // One index per hot query. InnoDB secondary indexes carry the primary key, so (status, name)
+        // also covers the teacher id and findByStatus never touches the table rows.
+        new Migration(5, "query indexes", con -> {
+            // Fails if duplicate (name, role) pairs exist; they must be resolved by hand first
+            createIndexIfMissing(con, "users", "uq_users_name_role", "UNIQUE", "name, role");
+            createIndexIfMissing(con, "teachers", "idx_teachers_status_name", "", "status, name");
+            createIndexIfMissing(con, "appointments", "idx_appointments_teacher_updated", "", "teacher_id, updated_at");
+            createIndexIfMissing(con, "appointments", "idx_appointments_student_updated", "", "student_id, updated_at");
+            createIndexIfMissing(con, "appointments", "idx_appointments_teacher_start", "", "teacher_id, start_at, end_at");
+        }),
+        // Fails if appointments reference missing teachers or students; those rows must be fixed first
+        new Migration(6, "appointment foreign keys", con -> {
+            addForeignKeyIfMissing(con, "appointments", "fk_appointments_teacher", "teacher_id", "teachers (id)");
+            addForeignKeyIfMissing(con, "appointments", "fk_appointments_student", "student_id", "students (id)");
+        }),
+        // AppointmentFeed polls every appointment changed since its watermark
+        new Migration(7, "appointment change feed index", con -> {
+            createIndexIfMissing(con, "appointments", "idx_appointments_updated", "", "updated_at");
+        }),
+        // One WeeklyAvailability bitmap per teacher
+        new Migration(8, "teacher availability", con -> {
+            execute(con, "CREATE TABLE IF NOT EXISTS teacher_availability ("
+                + "teacher_id INT PRIMARY KEY, "
+                + "slots VARBINARY(" + WeeklyAvailability.BYTES + ") NOT NULL, "
+                + "updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3), "
+                + "CONSTRAINT fk_teacher_availability_teacher FOREIGN KEY (teacher_id) REFERENCES teachers (id) "
+                + "ON DELETE CASCADE"
+                + ") ENGINE=InnoDB");
+        }),
+        // The calendar views fetch one week at a time by start_at, so rows created before migration 3
+        // get start_at/end_at parsed from their free-text time; rows that do not parse stay NULL and
+        // only appear in the lists
+        new Migration(9, "appointment calendar", con -> {
+            createIndexIfMissing(con, "appointments", "idx_appointments_student_start", "", "student_id, start_at, end_at");
+            backfillTimeRanges(con);
+        }),
+        // WriteJournal replays requests after a crash; the key makes a request that was already
+        // inserted a no-op. MySQL allows any number of NULLs in a unique index.
+        new Migration(10, "appointment request keys", con -> {
+            addColumnIfMissing(con, "appointments", "request_key", "CHAR(36) NULL");
+            createIndexIfMissing(con, "appointments", "uq_appointments_request_key", "UNIQUE", "request_key");
+        }),
+        // Optimistic concurrency: an edit or decision names the version it was made against and only
+        // applies if the row is still at that version, so concurrent editors never overwrite each
+        // other silently
+        new Migration(11, "row versions", con -> {
+            addColumnIfMissing(con, "users", "version", "INT NOT NULL DEFAULT 0");
+            addColumnIfMissing(con, "appointments", "version", "INT NOT NULL DEFAULT 0");
+        })
+    );
+
+    private SchemaMigrations() {
+    }
+
+    // Applies every migration not yet recorded. A named lock keeps two instances starting at the
+    // same time from running them twice.
+    public static void migrate() throws SQLException {
+        try (Connection con = Database.getConnection()) {
+            acquireLock(con);
+            try {
+                execute(con, "CREATE TABLE IF NOT EXISTS schema_migrations ("
+                    + "version INT PRIMARY KEY, "
+                    + "description VARCHAR(200) NOT NULL, "
+                    + "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP"
+                    + ") ENGINE=InnoDB");
+                Set<Integer> applied = appliedVersions(con);
+                for (Migration migration : MIGRATIONS) {
+                    if (applied.contains(migration.version())) {
+                        continue;
+                    }
+                    LOG.info("Applying schema migration " + migration.version() + ": " + migration.description());
+                    try {
+                        migration.step().apply(con);
+                    } catch (SQLException ex) {
+                        throw new SQLException("Schema migration " + migration.version() + " (" + migration.description()
+                            + ") failed: " + ex.getMessage(), ex.getSQLState(), ex.getErrorCode(), ex);
+                    }
+                    try (PreparedStatement stmt = con.prepareStatement(
+                            "INSERT INTO schema_migrations (version, description) VALUES (?, ?)")) {
+                        stmt.setInt(1, migration.version());
+                        stmt.setString(2, migration.description());
+                        stmt.executeUpdate();
+                    }
+                }
+            } finally {
+                releaseLock(con);
+            }
+        }
+    }
+
+    private static Set<Integer> appliedVersions(Connection con) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_migrations")) {
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    private static void acquireLock(Connection con) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next() || rs.getInt(1) != 1) {
+                throw new SQLException("Timed out waiting for another instance to finish schema migrations");
+            }
+        }
+    }
+
+    private static void releaseLock(Connection con) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        }
+    }
+
+    private static void addColumnIfMissing(Connection con, String table, String column, String definition)
+            throws SQLException {
+        if (!exists(con, "SELECT 1 FROM information_schema.COLUMNS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?", table, column)) {
+            execute(con, "ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    // kind is "" or "UNIQUE"
+    private static void createIndexIfMissing(Connection con, String table, String index, String kind, String columns)
+            throws SQLException {
+        if (!exists(con, "SELECT 1 FROM information_schema.STATISTICS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?", table, index)) {
+            execute(con, "CREATE " + kind + (kind.isEmpty() ? "" : " ") + "INDEX " + index
+                + " ON " + table + " (" + columns + ")");
+        }
+    }
+
+    private static void addForeignKeyIfMissing(Connection con, String table, String name, String column,
+                                               String references) throws SQLException {
+        if (!exists(con, "SELECT 1 FROM information_schema.TABLE_CONSTRAINTS WHERE TABLE_SCHEMA = DATABASE() "
+                + "AND TABLE_NAME = ? AND CONSTRAINT_NAME = ? AND CONSTRAINT_TYPE = 'FOREIGN KEY'", table, name)) {
+            execute(con, "ALTER TABLE " + table + " ADD CONSTRAINT " + name
+                + " FOREIGN KEY (" + column + ") REFERENCES " + references);
+        }
+    }
+
+    // Keeps updated_at as it is, so the backfill does not show up as a change in AppointmentFeed
+    private static void backfillTimeRanges(Connection con) throws SQLException {
+        int parsed = 0;
+        int skipped = 0;
+        try (Statement select = con.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id, time FROM appointments WHERE start_at IS NULL");
+             PreparedStatement update = con.prepareStatement(
+                 "UPDATE appointments SET start_at = ?, end_at = ?, updated_at = updated_at WHERE id = ?")) {
+            while (rs.next()) {
+                TimeSlot slot;
+                try {
+                    slot = TimeSlot.parse(rs.getString("time") == null ? "" : rs.getString("time"));
+                } catch (IllegalArgumentException ex) {
+                    skipped++;
+                    continue;
+                }
+                update.setTimestamp(1, Timestamp.valueOf(slot.start()));
+                update.setTimestamp(2, Timestamp.valueOf(slot.end()));
+                update.setInt(3, rs.getInt("id"));
+                update.addBatch();
+                if (++parsed % BACKFILL_BATCH == 0) {
+                    update.executeBatch();
+                }
+            }
+            update.executeBatch();
+        }
+        if (parsed > 0 || skipped > 0) {
+            LOG.info("Backfilled the time range of " + parsed + " appointments; " + skipped + " have an unparseable time");
+        }
+    }
+
+    private static boolean exists(Connection con, String sql, String... params) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setString(i + 1, params[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static void execute(Connection con, String sql) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+// Synthetic users, teachers and students for the JMH benchmarks and WorkloadSimulator, written
+// to whichever store Repositories chose. With MySQL it uses batched inserts and expects a scratch
+// database; users, teachers and students that already exist are kept, so a simulation or a
+// benchmark fork can be re-run against the same data.
+final class SeedData {
+    private SeedData() {
+    }
+
+    // Users with ids from..to inclusive, named user<id>, all active students with the given password
+    static void users(int from, int to, String password) throws SQLException {
+        InMemoryStore store = Repositories.memoryStore();
+        if (store != null) {
+            for (int id = from; id <= to; id++) {
+                store.addUser(new User(id, "user" + id, "Student", "Active", 0), password);
+            }
+            return;
+        }
+        batchInsert("INSERT IGNORE INTO users (id, name, role, password, status) VALUES (?, ?, 'Student', ?, 'Active')",
+            from, to, (stmt, id) -> {
+                stmt.setInt(1, id);
+                stmt.setString(2, "user" + id);
+                stmt.setString(3, password);
+            });
+    }
+
+    // Active teachers "Teacher 0".. and students "Student 0".. with consecutive ids
+    static void schedule(int firstTeacherId, int teachers, int firstStudentId, int students) throws SQLException {
+        InMemoryStore store = Repositories.memoryStore();
+        if (store != null) {
+            for (int t = 0; t < teachers; t++) {
+                store.addTeacher(new Teacher(firstTeacherId + t, "Teacher " + t, "Active"));
+            }
+            for (int s = 0; s < students; s++) {
+                store.addStudent(firstStudentId + s, "Student " + s);
+            }
+            return;
+        }
+        batchInsert("INSERT IGNORE INTO teachers (id, name, status) VALUES (?, ?, 'Active')",
+            firstTeacherId, firstTeacherId + teachers - 1, (stmt, id) -> {
+                stmt.setInt(1, id);
+                stmt.setString(2, "Teacher " + (id - firstTeacherId));
+            });
+        batchInsert("INSERT IGNORE INTO students (id, name) VALUES (?, ?)",
+            firstStudentId, firstStudentId + students - 1, (stmt, id) -> {
+                stmt.setInt(1, id);
+                stmt.setString(2, "Student " + (id - firstStudentId));
+            });
+    }
+
+    private interface Binder {
+        void bind(PreparedStatement stmt, int id) throws SQLException;
+    }
+
+    private static void batchInsert(String sql, int from, int to, Binder binder) throws SQLException {
+        try (Connection con = Database.getConnection();
+             PreparedStatement stmt = con.prepareStatement(sql)) {
+            con.setAutoCommit(false);
+            try {
+                for (int id = from; id <= to; id++) {
+                    binder.bind(stmt, id);
+                    stmt.addBatch();
+                    if ((id - from) % 1000 == 999) {
+                        stmt.executeBatch();
+                        con.commit();
+                    }
+                }
+                stmt.executeBatch();
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+// A signed-in user. Issued by AuthService.login; pass it to AuthService.check before acting on
+// the user's behalf.
+public record Session(String token, int userId, String role) {
+    @Override
+    public String toString() {
+        return "Session[userId=" + userId + ", role=" + role + "]"; // keep the token out of logs
+    }
+}
@@ -0,0 +1,179 @@
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Finds the earliest time a student can meet any of a set of teachers. Each teacher's published
+// WeeklyAvailability is combined with the teacher's and the student's existing bookings as
+// 672-bit masks, one week at a time, and runs of free slots long enough for the meeting are found
+// with shifts and ANDs over 11 longs. The bit work for hundreds of teachers takes microseconds;
+// the two booking queries dominate.
+//
+// Published availability is cached for -Dschedule.availability.cacheTtlSeconds (default 60) and
+// searched -Dschedule.availability.horizonWeeks ahead (default 4). A meeting never spans the
+// Sunday to Monday boundary.
+public final class SlotFinder {
+    private static final int HORIZON_WEEKS = Integer.getInteger("schedule.availability.horizonWeeks", 4);
+    private static final TtlCache<String, Map<Integer, WeeklyAvailability>> CACHE = new TtlCache<>(1,
+        Duration.ofSeconds(Long.getLong("schedule.availability.cacheTtlSeconds", 60)),
+        key -> Map.copyOf(Repositories.teachers().findAllAvailability()));
+
+    public record Opening(int teacherId, TimeSlot slot) {
+    }
+
+    private SlotFinder() {
+    }
+
+    // Call after a teacher publishes new availability in this process
+    public static void invalidate() {
+        CACHE.invalidateAll();
+    }
+
+    // The earliest meeting of the given length starting at or after `from`, or null if none of
+    // the teachers has a free, published slot within the horizon. Ties go to the earlier teacher
+    // in teacherIds.
+    public static Opening earliestCommon(int studentId, List<Integer> teacherIds, LocalDateTime from,
+                                         Duration length) throws Exception {
+        Map<Integer, WeeklyAvailability> availability = CACHE.get("all");
+        List<Integer> candidates = teacherIds.stream()
+            .filter(id -> availability.containsKey(id) && !availability.get(id).isEmpty())
+            .toList();
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        LocalDateTime weekStart = weekStart(from);
+        LocalDateTime horizon = weekStart.plusWeeks(HORIZON_WEEKS);
+        AppointmentRepository appointments = Repositories.appointments();
+        Map<Integer, List<TimeSlot>> teacherBookings = appointments.bookedSlots(candidates, from, horizon);
+        List<TimeSlot> studentBookings = appointments.studentBookedSlots(studentId, from, horizon);
+        return earliest(availability, candidates, teacherBookings, studentBookings, from, length, HORIZON_WEEKS);
+    }
+
+    // The search itself, without any I/O
+    static Opening earliest(Map<Integer, WeeklyAvailability> availability, Collection<Integer> teacherIds,
+                            Map<Integer, List<TimeSlot>> teacherBookings, List<TimeSlot> studentBookings,
+                            LocalDateTime from, Duration length, int weeks) {
+        int run = (int) ((length.toMinutes() + WeeklyAvailability.SLOT_MINUTES - 1) / WeeklyAvailability.SLOT_MINUTES);
+        if (run <= 0 || run > WeeklyAvailability.SLOTS) {
+            throw new IllegalArgumentException("Meeting length must be between 1 minute and a week");
+        }
+        LocalDateTime firstWeek = weekStart(from);
+        long[] open = new long[WeeklyAvailability.WORDS];
+        long[] free = new long[WeeklyAvailability.WORDS];
+        long[] shifted = new long[WeeklyAvailability.WORDS];
+
+        for (int week = 0; week < weeks; week++) {
+            LocalDateTime weekStart = firstWeek.plusWeeks(week);
+            // Slots the student can use this week: not in the past and not already booked
+            setAll(open);
+            if (week == 0) {
+                long seconds = ChronoUnit.SECONDS.between(weekStart, from) + (from.getNano() > 0 ? 1 : 0);
+                long slotSeconds = WeeklyAvailability.SLOT_MINUTES * 60L;
+                int firstSlot = (int) ((seconds + slotSeconds - 1) / slotSeconds);
+                clearRange(open, 0, firstSlot);
+            }
+            clearBookings(open, studentBookings, weekStart);
+
+            int best = -1;
+            int bestTeacher = 0;
+            for (int teacherId : teacherIds) {
+                WeeklyAvailability published = availability.get(teacherId);
+                if (published == null) {
+                    continue;
+                }
+                long[] words = published.words();
+                for (int i = 0; i < free.length; i++) {
+                    free[i] = words[i] & open[i];
+                }
+                clearBookings(free, teacherBookings.getOrDefault(teacherId, List.of()), weekStart);
+                keepRunStarts(free, shifted, run);
+                int slot = firstSetBit(free, best < 0 ? WeeklyAvailability.SLOTS : best);
+                if (slot >= 0) {
+                    best = slot;
+                    bestTeacher = teacherId;
+                }
+            }
+            if (best >= 0) {
+                LocalDateTime start = weekStart.plusMinutes((long) best * WeeklyAvailability.SLOT_MINUTES);
+                return new Opening(bestTeacher, new TimeSlot(start, start.plus(length)));
+            }
+        }
+        return null;
+    }
+
+    static LocalDateTime weekStart(LocalDateTime time) {
+        return time.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay();
+    }
+
+    // Leaves bit i set only if bits i .. i+run-1 were all set, doubling the covered length each step
+    private static void keepRunStarts(long[] bits, long[] scratch, int run) {
+        int covered = 1;
+        while (covered < run) {
+            int step = Math.min(covered, run - covered);
+            shiftDown(bits, scratch, step);
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] &= scratch[i];
+            }
+            covered += step;
+        }
+    }
+
+    // out bit i = in bit i+n, for 0 < n < 64 * in.length
+    private static void shiftDown(long[] in, long[] out, int n) {
+        int wordShift = n >>> 6;
+        int bitShift = n & 63;
+        for (int i = 0; i < in.length; i++) {
+            int src = i + wordShift;
+            long low = src < in.length ? in[src] : 0;
+            long high = src + 1 < in.length ? in[src + 1] : 0;
+            out[i] = bitShift == 0 ? low : (low >>> bitShift) | (high << (64 - bitShift));
+        }
+    }
+
+    // First set bit below limit, or -1
+    private static int firstSetBit(long[] bits, int limit) {
+        for (int i = 0; i < bits.length && i * 64 < limit; i++) {
+            if (bits[i] != 0) {
+                int bit = i * 64 + Long.numberOfTrailingZeros(bits[i]);
+                return bit < limit ? bit : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static void setAll(long[] bits) {
+        Arrays.fill(bits, -1L);
+        bits[bits.length - 1] = WeeklyAvailability.lastWordMask();
+    }
+
+    // Clears every slot that overlaps one of the bookings
+    private static void clearBookings(long[] bits, List<TimeSlot> bookings, LocalDateTime weekStart) {
+        for (TimeSlot booking : bookings) {
+            long start = ChronoUnit.MINUTES.between(weekStart, booking.start());
+            long end = ChronoUnit.MINUTES.between(weekStart, booking.end());
+            if (end <= 0 || start >= WeeklyAvailability.SLOTS * (long) WeeklyAvailability.SLOT_MINUTES) {
+                continue;
+            }
+            int from = (int) Math.max(0, Math.floorDiv(start, WeeklyAvailability.SLOT_MINUTES));
+            int to = (int) Math.min(WeeklyAvailability.SLOTS,
+                (end + WeeklyAvailability.SLOT_MINUTES - 1) / WeeklyAvailability.SLOT_MINUTES);
+            clearRange(bits, from, to);
+        }
+    }
+
+    // Clears bits [from, to)
+    private static void clearRange(long[] bits, int from, int to) {
+        for (int bit = from; bit < to; ) {
+            int word = bit >>> 6;
+            int end = Math.min(to, (word + 1) * 64);
+            long mask = (end - bit == 64 ? -1L : ((1L << (end - bit)) - 1)) << (bit & 63);
+            bits[word] &= ~mask;
+            bit = end;
+        }
+    }
+}
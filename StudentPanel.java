@@ -1,35 +1,45 @@
 import java.awt.*;
-import java.sql.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 
-public class StudentPanel extends JPanel {
+public class StudentPanel extends JPanel implements LazyPanel {
+    private final Session session;
     private int studentId;
     private CardLayout cardLayout;
     private JPanel contentPanel;
-    private JComboBox<String> teacherComboBox;
+    private static final int TEACHER_CHOICES = 50;
+
+    private JTextField txtTeacherSearch;
+    private JComboBox<Teacher> teacherComboBox;
     private JTextField txtTime;
     private JButton btnRequestAppointment;
-    private Map<String, Integer> teacherMap;
-    private DefaultTableModel teacherStatusModel;
+    private JButton btnFindSlot;
+    private TeacherDirectory.NameIndex teacherNames; // shared with TeacherDirectory, read-only
+    private AppointmentTableModel teacherStatusModel;
     private JTable teacherStatusTable;
+    private AsyncDb.Task statusLoad;
+    private boolean statusReloadRequested;
+    private WeekCalendar calendar;
 
-    public StudentPanel(int studentId) {
-        this.studentId = studentId;
-        this.teacherMap = new HashMap<>();
+    public StudentPanel(Session session) {
+        this.session = session;
+        this.studentId = session.userId();
         setLayout(new BorderLayout());
 
         // Sidebar Navigation
-        JPanel sidebar = new JPanel(new GridLayout(2, 1, 5, 5));
+        JPanel sidebar = new JPanel(new GridLayout(3, 1, 5, 5));
         sidebar.setBackground(Color.decode("#03045E"));
         
         JButton btnRequestAppointmentPanel = createStyledButton("Request Appointment");
         JButton btnTeacherStatus = createStyledButton("Teacher Status");
+        JButton btnCalendar = createStyledButton("Calendar");
         
         sidebar.add(btnRequestAppointmentPanel);
         sidebar.add(btnTeacherStatus);
+        sidebar.add(btnCalendar);
         add(sidebar, BorderLayout.WEST);
 
         // Main Content Area
@@ -40,36 +50,90 @@ public class StudentPanel extends JPanel {
         
         contentPanel.add(requestAppointmentPanel, "RequestAppointment");
         contentPanel.add(teacherStatusPanel, "TeacherStatus");
+        calendar = new WeekCalendar("student.week", (from, to) -> {
+            AuthService.check(session);
+            return Repositories.appointments().findForStudentBetween(studentId, from, to);
+        }, Appointment::teacherName);
+        contentPanel.add(calendar, "Calendar");
         
         add(contentPanel, BorderLayout.CENTER);
 
         // Button Listeners
-        btnRequestAppointmentPanel.addActionListener(e -> cardLayout.show(contentPanel, "RequestAppointment"));
+        btnRequestAppointmentPanel.addActionListener(e -> {
+            cancelTeacherStatusLoad();
+            cardLayout.show(contentPanel, "RequestAppointment");
+        });
         btnTeacherStatus.addActionListener(e -> {
             loadTeacherStatus();
             cardLayout.show(contentPanel, "TeacherStatus");
         });
+        btnCalendar.addActionListener(e -> {
+            cancelTeacherStatusLoad();
+            calendar.open();
+            cardLayout.show(contentPanel, "Calendar");
+        });
+    }
 
-        // Load available teachers
-        loadAvailableTeachers();
+    // The request form is the first card; its teacher list is the only initial load
+    @Override
+    public void firstShown(Runnable onReady) {
+        loadAvailableTeachers(onReady);
+        // Approvals and declines reach the Teacher Status table without reopening it
+        AppointmentFeed.forStudent(studentId, this::applyPushedChanges);
+        WriteJournal journal = Repositories.journal();
+        if (journal != null) {
+            journal.onRejected(studentId, this::requestRejected);
+        }
+    }
+
+    // A journaled request lost its slot to another booking by the time it reached the database
+    private void requestRejected(JournalWrite.Request request) {
+        JOptionPane.showMessageDialog(this, "Your request for " + request.slot().format()
+            + " could not be booked: the teacher was booked at that time in the meantime.\nPlease choose another time.",
+            "Request Not Booked", JOptionPane.WARNING_MESSAGE);
+    }
+
+    private void applyPushedChanges(List<Appointment> changes) {
+        if (teacherStatusModel.changesSince() != null) { // otherwise its first load will include these
+            teacherStatusModel.applyChanges(changes);
+        }
+        calendar.applyChanges(changes);
     }
 
     private JPanel createRequestAppointmentPanel() {
         JPanel panel = new JPanel(new BorderLayout());
-        JPanel formPanel = new JPanel(new GridLayout(3, 2, 10, 10));
-        
+        JPanel formPanel = new JPanel(new GridLayout(4, 2, 10, 10));
+
+        formPanel.add(new JLabel("Search Teacher:"));
+        txtTeacherSearch = new JTextField();
+        txtTeacherSearch.setToolTipText("Type the start of a first or last name");
+        formPanel.add(txtTeacherSearch);
+        Debounce.onTextChange(txtTeacherSearch, 150, this::showTeachers);
+
         formPanel.add(new JLabel("Select Teacher:"));
         teacherComboBox = new JComboBox<>();
+        teacherComboBox.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                return super.getListCellRendererComponent(list, value instanceof Teacher t ? t.name() : value,
+                    index, isSelected, cellHasFocus);
+            }
+        });
         formPanel.add(teacherComboBox);
         
-        formPanel.add(new JLabel("Time:"));
+        formPanel.add(new JLabel("Time (yyyy-MM-dd HH:mm):"));
         txtTime = new JTextField();
+        txtTime.setToolTipText("e.g. 2025-03-14 10:00 or 2025-03-14 10:00-10:45");
         formPanel.add(txtTime);
         
+        btnFindSlot = new JButton("Find Open Slot");
+        btnFindSlot.setToolTipText("Earliest time any of the listed teachers has published as available and is free");
         btnRequestAppointment = new JButton("Request Appointment");
-        formPanel.add(new JLabel());
+        formPanel.add(btnFindSlot);
         formPanel.add(btnRequestAppointment);
-        
+
+        btnFindSlot.addActionListener(e -> findOpenSlot());
         btnRequestAppointment.addActionListener(e -> requestAppointment());
         panel.add(formPanel, BorderLayout.CENTER);
         
@@ -78,31 +142,40 @@ public class StudentPanel extends JPanel {
 
     private JPanel createTeacherStatusPanel() {
         JPanel panel = new JPanel(new BorderLayout());
-        teacherStatusModel = new DefaultTableModel(new String[]{"Teacher Name", "Time Allotted", "Status"}, 0);
+        teacherStatusModel = new AppointmentTableModel(Appointment::teacherName, "Teacher Name", "Time Allotted", "Status");
         teacherStatusTable = new JTable(teacherStatusModel);
         panel.add(new JScrollPane(teacherStatusTable), BorderLayout.CENTER);
         return panel;
     }
 
+    // Only appointments changed since the last load are fetched and patched into the table
     private void loadTeacherStatus() {
-        teacherStatusModel.setRowCount(0);
-        try (Connection con = Database.getConnection();
-             PreparedStatement stmt = con.prepareStatement(
-                 "SELECT t.name, a.time, a.status FROM appointments a " +
-                 "JOIN teachers t ON a.teacher_id = t.id WHERE a.student_id = ?")) {
-            stmt.setInt(1, studentId);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                teacherStatusModel.addRow(new Object[]{
-                    rs.getString("name"),
-                    rs.getString("time"),
-                    rs.getString("status")
-                });
+        if (statusLoad != null && statusLoad.isRunning()) {
+            // Let the load in flight finish, then pick up anything newer
+            statusReloadRequested = true;
+            return;
+        }
+        Timestamp since = teacherStatusModel.changesSince();
+        statusLoad = AsyncDb.submit("student.appointments", () -> {
+            AuthService.check(session);
+            return Repositories.appointments().changesForStudent(studentId, since);
+        }, changes -> {
+            teacherStatusModel.applyChanges(changes);
+            if (statusReloadRequested) {
+                statusReloadRequested = false;
+                loadTeacherStatus();
             }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
+        }, ex -> {
+            statusReloadRequested = false;
             JOptionPane.showMessageDialog(this, "Error loading teacher status.");
+        });
+    }
+
+    private void cancelTeacherStatusLoad() {
+        if (statusLoad != null) {
+            statusLoad.cancel();
         }
+        statusReloadRequested = false;
     }
 
     private JButton createStyledButton(String text) {
@@ -116,42 +189,100 @@ public class StudentPanel extends JPanel {
         return button;
     }
 
-    private void loadAvailableTeachers() {
-        teacherComboBox.removeAllItems();
-        teacherMap.clear();
-        try (Connection con = Database.getConnection();
-             PreparedStatement stmt = con.prepareStatement("SELECT id, name FROM teachers WHERE status = 'Active'")) {
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                int teacherId = rs.getInt("id");
-                String teacherName = rs.getString("name");
-                teacherComboBox.addItem(teacherName);
-                teacherMap.put(teacherName, teacherId);
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
+    private void loadAvailableTeachers(Runnable onLoaded) {
+        AsyncDb.submit("student.teachers", TeacherDirectory::active, directory -> {
+            teacherNames = directory.names();
+            showTeachers(txtTeacherSearch.getText().trim());
+            onLoaded.run();
+        }, ex -> {
+            onLoaded.run();
             JOptionPane.showMessageDialog(this, "Error loading available teachers.");
+        });
+    }
+
+    // Fills the picker from the in-memory name index; no query per keystroke
+    private void showTeachers(String query) {
+        if (teacherNames == null) {
+            return;
         }
+        List<Teacher> matches = teacherNames.startingWith(query, TEACHER_CHOICES);
+        teacherComboBox.setModel(new DefaultComboBoxModel<>(matches.toArray(new Teacher[0])));
+    }
+
+    // Searches the teachers currently in the picker and fills in the earliest slot found
+    private void findOpenSlot() {
+        ComboBoxModel<Teacher> listed = teacherComboBox.getModel();
+        List<Integer> teacherIds = new ArrayList<>(listed.getSize());
+        for (int i = 0; i < listed.getSize(); i++) {
+            teacherIds.add(listed.getElementAt(i).id());
+        }
+        if (teacherIds.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No teachers match the search.");
+            return;
+        }
+        btnFindSlot.setEnabled(false);
+        AsyncDb.submit("student.findSlot", () -> {
+            AuthService.check(session, "Student");
+            return SlotFinder.earliestCommon(studentId, teacherIds, LocalDateTime.now(), TimeSlot.DEFAULT_LENGTH);
+        }, opening -> {
+            btnFindSlot.setEnabled(true);
+            if (opening == null) {
+                JOptionPane.showMessageDialog(this, "None of the listed teachers has an open slot in the coming weeks.");
+                return;
+            }
+            for (int i = 0; i < listed.getSize(); i++) {
+                if (listed.getElementAt(i).id() == opening.teacherId()) {
+                    teacherComboBox.setSelectedIndex(i);
+                    break;
+                }
+            }
+            txtTime.setText(opening.slot().format());
+        }, ex -> {
+            btnFindSlot.setEnabled(true);
+            JOptionPane.showMessageDialog(this, "Error finding an open slot.");
+        });
     }
 
     private void requestAppointment() {
-        String selectedTeacher = (String) teacherComboBox.getSelectedItem();
+        Teacher selectedTeacher = (Teacher) teacherComboBox.getSelectedItem();
         String time = txtTime.getText();
         if (selectedTeacher == null || time.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please select a teacher and enter a time.");
             return;
         }
-        int teacherId = teacherMap.get(selectedTeacher);
-        try (Connection con = Database.getConnection();
-             PreparedStatement stmt = con.prepareStatement("INSERT INTO appointments (student_id, teacher_id, time, status) VALUES (?, ?, ?, 'pending')")) {
-            stmt.setInt(1, studentId);
-            stmt.setInt(2, teacherId);
-            stmt.setString(3, time);
-            stmt.executeUpdate();
-            JOptionPane.showMessageDialog(this, "Appointment request sent successfully!");
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error sending appointment request.");
+        TimeSlot slot;
+        try {
+            slot = TimeSlot.parse(time);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, "Please enter the time as " + TimeSlot.FORMAT_HINT + ".");
+            return;
+        }
+        if (!slot.start().isAfter(LocalDateTime.now())) {
+            JOptionPane.showMessageDialog(this, "Please choose a time in the future.");
+            return;
         }
+        int teacherId = selectedTeacher.id();
+        btnRequestAppointment.setEnabled(false);
+        AsyncDb.submit("booking.request", () -> {
+            AuthService.check(session, "Student");
+            return BookingService.request(studentId, teacherId, slot);
+        }, result -> {
+            btnRequestAppointment.setEnabled(true);
+            if (result.booked()) {
+                JOptionPane.showMessageDialog(this, "Appointment request sent successfully!");
+                return;
+            }
+            TimeSlot suggestion = result.suggestion();
+            int choice = JOptionPane.showConfirmDialog(this,
+                selectedTeacher.name() + " is already booked at that time.\nThe nearest free slot is " + suggestion.format() + ". Request it instead?",
+                "Time Not Available", JOptionPane.YES_NO_OPTION);
+            if (choice == JOptionPane.YES_OPTION) {
+                txtTime.setText(suggestion.format());
+                requestAppointment();
+            }
+        }, ex -> {
+            btnRequestAppointment.setEnabled(true);
+            JOptionPane.showMessageDialog(this, "Error sending appointment request.");
+        });
     }
 }
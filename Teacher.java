@@ -0,0 +1,2 @@
+public record Teacher(int id, String name, String status) {
+}
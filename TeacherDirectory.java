@@ -0,0 +1,119 @@
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Process-wide cache of the teacher directory, so every StudentPanel shares one query per TTL
+// instead of running its own. Entries are dropped early when a teacher changes status here.
+public class TeacherDirectory {
+    private static final TtlCache<String, Snapshot> CACHE = new TtlCache<>(8,
+        Duration.ofSeconds(Long.getLong("schedule.teachers.cacheTtlSeconds", 60)), TeacherDirectory::load);
+
+    // Immutable, shared between callers
+    public record Snapshot(List<Teacher> teachers, NameIndex names) {
+    }
+
+    public static Snapshot active() throws Exception {
+        return CACHE.get("Active");
+    }
+
+    public static void invalidate() {
+        CACHE.invalidateAll();
+    }
+
+    public static TtlCache.Stats stats() {
+        return CACHE.stats();
+    }
+
+    private static Snapshot load(String status) throws SQLException {
+        List<Teacher> teachers = List.copyOf(Repositories.teachers().findByStatus(status));
+        return new Snapshot(teachers, new NameIndex(teachers));
+    }
+
+    // Prefix search over teacher names for the type-ahead picker. Names are normalized (case and
+    // accents folded, spaces collapsed) and indexed under the whole name and under each later word,
+    // so "smi" finds "John Smith". The keys are one sorted array: a lookup is a binary search
+    // followed by a scan of the matches, with no query and no pass over the whole directory.
+    public static final class NameIndex {
+        private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+        private static final Pattern SPACES = Pattern.compile("\\s+");
+
+        private final List<Teacher> teachers;
+        private final String[] keys;
+        private final int[] positions;       // keys[i] belongs to teachers.get(positions[i])
+        private final int[] positionsByName; // teachers in normalized name order
+
+        NameIndex(List<Teacher> teachers) {
+            this.teachers = teachers;
+            List<String> keyList = new ArrayList<>();
+            List<Integer> positionList = new ArrayList<>();
+            String[] fullNames = new String[teachers.size()];
+            for (int i = 0; i < teachers.size(); i++) {
+                String name = normalize(teachers.get(i).name());
+                fullNames[i] = name;
+                keyList.add(name);
+                positionList.add(i);
+                for (int space = name.indexOf(' '); space >= 0; space = name.indexOf(' ', space + 1)) {
+                    keyList.add(name.substring(space + 1));
+                    positionList.add(i);
+                }
+            }
+            Integer[] order = new Integer[keyList.size()];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, Comparator.comparing(keyList::get));
+            keys = new String[order.length];
+            positions = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                keys[i] = keyList.get(order[i]);
+                positions[i] = positionList.get(order[i]);
+            }
+            Integer[] byName = new Integer[teachers.size()];
+            Arrays.setAll(byName, i -> i);
+            Arrays.sort(byName, Comparator.comparing(i -> fullNames[i]));
+            positionsByName = Arrays.stream(byName).mapToInt(Integer::intValue).toArray();
+        }
+
+        // Up to limit teachers with a name or name word starting with query, in key order;
+        // the first limit teachers by name when query is blank
+        public List<Teacher> startingWith(String query, int limit) {
+            String prefix = normalize(query);
+            List<Teacher> matches = new ArrayList<>(Math.min(limit, teachers.size()));
+            if (prefix.isEmpty()) {
+                for (int i = 0; i < positionsByName.length && matches.size() < limit; i++) {
+                    matches.add(teachers.get(positionsByName[i]));
+                }
+                return matches;
+            }
+            // First key >= prefix; Arrays.binarySearch may land on any of several equal keys
+            int from = 0;
+            int to = keys.length;
+            while (from < to) {
+                int mid = (from + to) >>> 1;
+                if (keys[mid].compareTo(prefix) < 0) {
+                    from = mid + 1;
+                } else {
+                    to = mid;
+                }
+            }
+            Set<Integer> seen = new HashSet<>();
+            for (int i = from; i < keys.length && keys[i].startsWith(prefix) && seen.size() < limit; i++) {
+                if (seen.add(positions[i])) {
+                    matches.add(teachers.get(positions[i]));
+                }
+            }
+            return matches;
+        }
+
+        static String normalize(String name) {
+            String folded = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+            return SPACES.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+        }
+    }
+}
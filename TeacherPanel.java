@@ -1,23 +1,42 @@
 import java.awt.*;
-import java.sql.*;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import javax.swing.*;
 import javax.swing.table.*;
 
-public class TeacherPanel extends JPanel {
+public class TeacherPanel extends JPanel implements LazyPanel {
+    private final Session session;
     private final int teacherId;
     private final JTable table;
-    private final DefaultTableModel model;
+    private final AppointmentTableModel model;
     private final JButton refreshButton;
+    private final JButton approveSelectedButton;
+    private final JButton declineSelectedButton;
+    private final JButton availabilityButton;
     private final JToggleButton statusToggle;
+    private final WeekCalendar calendar;
     private boolean isActive = true;
+    private AsyncDb.Task loadTask;
+    private boolean reloadRequested;
+    private Runnable onFirstLoad;
 
-    public TeacherPanel(int teacherId) {
-        this.teacherId = teacherId;
+    public TeacherPanel(Session session) {
+        this.session = session;
+        this.teacherId = session.userId();
         setLayout(new BorderLayout(10, 10));
         setBackground(Color.decode("#F5F5F5"));
         setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
-        model = new DefaultTableModel(new Object[]{"Student Name", "Time", "Status", "Action"}, 0) {
+        // The Action column holds no value; it is painted and edited by one shared ButtonPanel each
+        model = new AppointmentTableModel(Appointment::studentName, "Student Name", "Time", "Status", "Action") {
             @Override
             public boolean isCellEditable(int row, int column) {
                 return column == 3;
@@ -26,28 +45,75 @@ public class TeacherPanel extends JPanel {
 
         table = new JTable(model);
         table.setRowHeight(30);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         table.getColumn("Action").setCellRenderer(new ButtonRenderer());
         table.getColumn("Action").setCellEditor(new ButtonEditor());
 
         refreshButton = createButton("Refresh");
         refreshButton.addActionListener(e -> loadAppointments());
 
+        approveSelectedButton = createButton("Approve selected");
+        approveSelectedButton.setPreferredSize(new Dimension(170, 30));
+        approveSelectedButton.addActionListener(e -> updateSelectedStatus("approved"));
+        declineSelectedButton = createButton("Decline selected");
+        declineSelectedButton.setPreferredSize(new Dimension(170, 30));
+        declineSelectedButton.addActionListener(e -> updateSelectedStatus("declined"));
+
+        availabilityButton = createButton("Availability");
+        availabilityButton.setPreferredSize(new Dimension(140, 30));
+        availabilityButton.addActionListener(e -> editAvailability());
+
         statusToggle = new JToggleButton("Active", isActive);
         updateStatusToggleStyle();
         statusToggle.addActionListener(e -> toggleStatus());
 
+        calendar = new WeekCalendar("teacher.week", (from, to) -> {
+            AuthService.check(session);
+            return Repositories.appointments().findForTeacherBetween(teacherId, from, to);
+        }, Appointment::studentName);
+
         initializeUI();
+    }
+
+    @Override
+    public void firstShown(Runnable onReady) {
+        onFirstLoad = onReady;
         loadAppointments();
+        // New requests and status changes arrive without pressing Refresh, for the panel's lifetime
+        AppointmentFeed.forTeacher(teacherId, this::applyPushedChanges);
+        WriteJournal journal = Repositories.journal();
+        if (journal != null) {
+            journal.onStatusConflict(teacherId, change -> resolveConflicts(change.appointmentIds(), change.status()));
+        }
+    }
+
+    private void applyPushedChanges(List<Appointment> changes) {
+        calendar.applyChanges(changes);
+        if (model.changesSince() == null) {
+            return; // the first load is still running and will include these
+        }
+        model.applyChanges(changes);
     }
 
     private void initializeUI() {
         JScrollPane scrollPane = new JScrollPane(table);
         scrollPane.setBorder(BorderFactory.createEmptyBorder());
-        add(scrollPane, BorderLayout.CENTER);
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Requests", scrollPane);
+        tabs.addTab("Calendar", calendar);
+        tabs.addChangeListener(e -> {
+            if (tabs.getSelectedComponent() == calendar) {
+                calendar.open();
+            }
+        });
+        add(tabs, BorderLayout.CENTER);
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
         buttonPanel.setBackground(Color.WHITE);
         buttonPanel.add(refreshButton);
+        buttonPanel.add(approveSelectedButton);
+        buttonPanel.add(declineSelectedButton);
+        buttonPanel.add(availabilityButton);
         buttonPanel.add(statusToggle);
         add(buttonPanel, BorderLayout.SOUTH);
     }
@@ -65,62 +131,80 @@ public class TeacherPanel extends JPanel {
     }
 
     private void updateDatabaseStatus() {
-        SwingWorker<Void, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Void doInBackground() {
-                String sql = "UPDATE appointments SET status = ? WHERE teacher_id = ?";
-                try (Connection con = Database.getConnection();
-                     PreparedStatement stmt = con.prepareStatement(sql)) {
-                    stmt.setString(1, isActive ? "active" : "inactive");
-                    stmt.setInt(2, teacherId);
-                    stmt.executeUpdate();
-                } catch (SQLException ex) {
-                    showError("Database Error", "Failed to update status: " + ex.getMessage());
-                }
-                return null;
+        String status = isActive ? "Active" : "Inactive";
+        AsyncDb.submit("teacher.setStatus", () -> {
+            AuthService.check(session, "Teacher");
+            Repositories.teachers().updateStatus(teacherId, status);
+            TeacherDirectory.invalidate();
+            return null;
+        }, ignored -> { }, ex -> showError("Database Error", "Failed to update status: " + ex.getMessage()));
+    }
+
+    // Weekly hours students can book through "Find Open Slot", edited as a grid of 15-minute slots
+    private void editAvailability() {
+        availabilityButton.setEnabled(false);
+        AsyncDb.submit("teacher.availability", () -> {
+            AuthService.check(session, "Teacher");
+            return Repositories.teachers().findAvailability(teacherId);
+        }, current -> {
+            availabilityButton.setEnabled(true);
+            AvailabilityTableModel grid = new AvailabilityTableModel(current.toBitSet());
+            JTable gridTable = new JTable(grid);
+            gridTable.getTableHeader().setReorderingAllowed(false);
+            gridTable.setCellSelectionEnabled(true);
+            JScrollPane scrollPane = new JScrollPane(gridTable);
+            scrollPane.setPreferredSize(new Dimension(560, 420));
+            int choice = JOptionPane.showConfirmDialog(this, scrollPane, "Weekly Availability",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+            if (choice == JOptionPane.OK_OPTION) {
+                saveAvailability(WeeklyAvailability.of(grid.slots));
             }
-        };
-        worker.execute();
+        }, ex -> {
+            availabilityButton.setEnabled(true);
+            showError("Database Error", "Failed to load availability: " + ex.getMessage());
+        });
+    }
+
+    private void saveAvailability(WeeklyAvailability availability) {
+        AsyncDb.submit("teacher.saveAvailability", () -> {
+            AuthService.check(session, "Teacher");
+            Repositories.teachers().saveAvailability(teacherId, availability);
+            SlotFinder.invalidate();
+            return null;
+        }, ignored -> { }, ex -> showError("Database Error", "Failed to save availability: " + ex.getMessage()));
     }
 
+    // Fetches only appointments changed since the last load and patches them into the table
     private void loadAppointments() {
-        SwingWorker<Void, Object[]> worker = new SwingWorker<>() {
-            @Override
-            protected Void doInBackground() {
-                model.setRowCount(0);
-                String sql = "SELECT a.id, s.name AS student_name, a.time, a.status FROM appointments a JOIN students s ON a.student_id = s.id WHERE a.teacher_id = ?";
-
-                try (Connection con = Database.getConnection();
-                     PreparedStatement stmt = con.prepareStatement(sql)) {
-                    stmt.setInt(1, teacherId);
-                    ResultSet rs = stmt.executeQuery();
-
-                    while (rs.next()) {
-                        int appointmentId = rs.getInt("id");
-                        publish(new Object[]{
-                            rs.getString("student_name"),
-                            rs.getString("time"),
-                            rs.getString("status"),
-                            new ButtonPanel(appointmentId) // Pass appointment ID to buttons
-                        });
-                    }
-                } catch (SQLException ex) {
-                    showError("Database Error", "Failed to load appointments: " + ex.getMessage());
-                }
-                return null;
+        if (loadTask != null && loadTask.isRunning()) {
+            // Let the load in flight finish, then pick up anything newer
+            reloadRequested = true;
+            return;
+        }
+        Timestamp since = model.changesSince();
+        loadTask = AsyncDb.submit("teacher.appointments", () -> {
+            AuthService.check(session);
+            return Repositories.appointments().changesForTeacher(teacherId, since);
+        }, changes -> {
+            model.applyChanges(changes);
+            Metrics.observeAppointments(changes);
+            firstLoadDone();
+            if (reloadRequested) {
+                reloadRequested = false;
+                loadAppointments();
             }
+        }, ex -> {
+            reloadRequested = false;
+            firstLoadDone();
+            showError("Database Error", "Failed to load appointments: " + ex.getMessage());
+        });
+    }
 
-            @Override
-            protected void process(java.util.List<Object[]> chunks) {
-                SwingUtilities.invokeLater(() -> {
-                    for (Object[] row : chunks) {
-                        model.addRow(row);
-                    }
-                    model.fireTableDataChanged();
-                });
-            }
-        };
-        worker.execute();
+    private void firstLoadDone() {
+        if (onFirstLoad != null) {
+            onFirstLoad.run();
+            onFirstLoad = null;
+        }
     }
 
     private JButton createButton(String text) {
@@ -137,38 +221,212 @@ public class TeacherPanel extends JPanel {
         JOptionPane.showMessageDialog(this, message, title, JOptionPane.ERROR_MESSAGE);
     }
 
-    private class ButtonRenderer extends DefaultTableCellRenderer {
+    private void updateSelectedStatus(String newStatus) {
+        int[] selectedRows = table.getSelectedRows();
+        if (selectedRows.length == 0) {
+            JOptionPane.showMessageDialog(this, "Please select one or more appointments.");
+            return;
+        }
+        int[] appointmentIds = new int[selectedRows.length];
+        for (int i = 0; i < selectedRows.length; i++) {
+            appointmentIds[i] = model.getAppointmentAt(table.convertRowIndexToModel(selectedRows[i])).id();
+        }
+        updateAppointmentStatus(appointmentIds, newStatus);
+    }
+
+    private void updateAppointmentStatus(int appointmentId, String newStatus) {
+        updateAppointmentStatus(new int[]{appointmentId}, newStatus);
+    }
+
+    // All ids are written in one transaction, followed by a single refresh. With a write journal the
+    // change is journaled and shown at once; the feed brings the stored rows once it is applied.
+    // Either way each row is only changed if it is still at the version shown in the table, and rows
+    // someone else changed meanwhile go to resolveConflicts.
+    private void updateAppointmentStatus(int[] appointmentIds, String newStatus) {
+        int[] versions = new int[appointmentIds.length];
+        for (int i = 0; i < appointmentIds.length; i++) {
+            Appointment shown = model.getAppointment(appointmentIds[i]);
+            versions[i] = shown != null ? shown.version() : -1;
+        }
+        WriteJournal journal = Repositories.journal();
+        if (journal != null) {
+            // Off the EDT too: with schedule.journal.fsync the append waits for the disk
+            AsyncDb.submit("appointments.setStatus", () -> {
+                AuthService.check(session, "Teacher");
+                journal.setStatus(teacherId, appointmentIds, versions, newStatus);
+                return null;
+            }, done -> {
+                if ("declined".equals(newStatus)) {
+                    BookingService.invalidate(teacherId);
+                }
+                List<Appointment> changed = withStatus(appointmentIds, newStatus);
+                model.applyChanges(changed);
+                Metrics.observeAppointments(changed);
+            }, ex -> showError("Error", "Failed to update status: " + ex.getMessage()));
+            return;
+        }
+        AsyncDb.submit("appointments.setStatus", () -> {
+            AuthService.check(session, "Teacher");
+            return Repositories.appointments().updateStatus(teacherId, appointmentIds, versions, newStatus);
+        }, conflicts -> {
+            if ("declined".equals(newStatus)) {
+                BookingService.invalidate(teacherId);
+            }
+            if (conflicts.length > 0) {
+                resolveConflicts(conflicts, newStatus);
+            } else {
+                loadAppointments();
+            }
+        }, ex -> {
+            showError("Database Error", "Failed to update status: " + ex.getMessage());
+            loadAppointments();
+        });
+    }
+
+    // Some of these were not set to status because someone else changed them first. Reloads every
+    // row, since the other change may be older than the delta watermark, then shows the ones that
+    // did not end up in that status and offers to apply the decision over theirs.
+    private void resolveConflicts(int[] appointmentIds, String status) {
+        AsyncDb.submit("teacher.appointments", () -> {
+            AuthService.check(session);
+            return Repositories.appointments().changesForTeacher(teacherId, null);
+        }, rows -> {
+            model.applyChanges(rows);
+            Metrics.observeAppointments(rows);
+            List<Appointment> changed = new ArrayList<>();
+            for (int id : appointmentIds) {
+                Appointment current = model.getAppointment(id);
+                if (current != null && !current.status().equals(status)) {
+                    changed.add(current);
+                }
+            }
+            if (changed.isEmpty()) {
+                return; // deleted, or the other change set the same status
+            }
+            StringBuilder message = new StringBuilder("Someone else changed ")
+                .append(changed.size() == 1 ? "this appointment" : changed.size() + " of these appointments")
+                .append(" before your decision was saved:\n\n");
+            for (Appointment a : changed) {
+                message.append(a.studentName()).append(", ").append(a.time()).append(": now ").append(a.status()).append('\n');
+            }
+            String verb = "approved".equals(status) ? "Approve" : "Decline";
+            message.append('\n').append(verb).append(changed.size() == 1 ? " it" : " them").append(" anyway?");
+            int choice = JOptionPane.showConfirmDialog(this, message.toString(), "Appointment Changed",
+                JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+            if (choice == JOptionPane.YES_OPTION) {
+                updateAppointmentStatus(changed.stream().mapToInt(Appointment::id).toArray(), status);
+            }
+        }, ex -> showError("Database Error", "Failed to load appointments: " + ex.getMessage()));
+    }
+
+    // Copies of the listed rows with the new status, one version on as the write will leave them;
+    // updatedAt is kept so the delta watermark stays put
+    private List<Appointment> withStatus(int[] appointmentIds, String status) {
+        Set<Integer> ids = new HashSet<>();
+        for (int id : appointmentIds) {
+            ids.add(id);
+        }
+        List<Appointment> changed = new ArrayList<>();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            Appointment a = model.getAppointmentAt(row);
+            if (ids.contains(a.id()) && !a.status().equals(status)) {
+                changed.add(new Appointment(a.id(), a.teacherId(), a.studentId(), a.teacherName(), a.studentName(),
+                    a.time(), a.slot(), status, a.updatedAt(), a.version() + 1));
+            }
+        }
+        return changed;
+    }
+
+    private class ButtonRenderer implements TableCellRenderer {
+        private final ButtonPanel panel = new ButtonPanel();
+
         @Override
         public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-            return (Component) value;
+            panel.setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
+            return panel;
         }
     }
 
     private class ButtonEditor extends AbstractCellEditor implements TableCellEditor {
-        private final ButtonPanel panel;
+        private final ButtonPanel panel = new ButtonPanel();
+        private int appointmentId = -1;
 
         public ButtonEditor() {
-            panel = new ButtonPanel(-1);
+            panel.approveButton.addActionListener(e -> decide("approved"));
+            panel.declineButton.addActionListener(e -> decide("declined"));
+        }
+
+        private void decide(String newStatus) {
+            int id = appointmentId;
+            stopCellEditing();
+            updateAppointmentStatus(id, newStatus);
         }
 
         @Override
         public Object getCellEditorValue() {
-            return panel;
+            return null;
         }
 
         @Override
         public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
-            return (Component) value;
+            appointmentId = model.getAppointmentAt(table.convertRowIndexToModel(row)).id();
+            panel.setBackground(table.getSelectionBackground());
+            return panel;
         }
     }
 
-    private class ButtonPanel extends JPanel {
+    // One row per 15-minute slot of the day, one checkbox column per weekday
+    private static class AvailabilityTableModel extends AbstractTableModel {
+        private final BitSet slots;
+
+        AvailabilityTableModel(BitSet slots) {
+            this.slots = slots;
+        }
+
+        @Override
+        public int getRowCount() {
+            return WeeklyAvailability.SLOTS_PER_DAY;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 8;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return column == 0 ? "Time" : DayOfWeek.of(column).getDisplayName(TextStyle.SHORT, Locale.getDefault());
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? String.class : Boolean.class;
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return column > 0;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            LocalTime time = LocalTime.MIDNIGHT.plusMinutes((long) row * WeeklyAvailability.SLOT_MINUTES);
+            return column == 0 ? time.toString() : slots.get(WeeklyAvailability.slotOf(DayOfWeek.of(column), time));
+        }
+
+        @Override
+        public void setValueAt(Object value, int row, int column) {
+            LocalTime time = LocalTime.MIDNIGHT.plusMinutes((long) row * WeeklyAvailability.SLOT_MINUTES);
+            slots.set(WeeklyAvailability.slotOf(DayOfWeek.of(column), time), (Boolean) value);
+            fireTableCellUpdated(row, column);
+        }
+    }
+
+    private static class ButtonPanel extends JPanel {
         private final JButton approveButton;
         private final JButton declineButton;
-        private final int appointmentId;
 
-        public ButtonPanel(int appointmentId) {
-            this.appointmentId = appointmentId;
+        public ButtonPanel() {
             setLayout(new FlowLayout(FlowLayout.CENTER, 5, 0));
 
             approveButton = new JButton("Approve");
@@ -179,35 +437,8 @@ public class TeacherPanel extends JPanel {
             declineButton.setBackground(new Color(244, 67, 54));
             declineButton.setForeground(Color.WHITE);
 
-            approveButton.addActionListener(e -> updateAppointmentStatus("approved"));
-            declineButton.addActionListener(e -> updateAppointmentStatus("declined"));
-
             add(approveButton);
             add(declineButton);
         }
-
-        private void updateAppointmentStatus(String newStatus) {
-            SwingWorker<Void, Void> worker = new SwingWorker<>() {
-                @Override
-                protected Void doInBackground() {
-                    String sql = "UPDATE appointments SET status = ? WHERE id = ?";
-                    try (Connection con = Database.getConnection();
-                         PreparedStatement stmt = con.prepareStatement(sql)) {
-                        stmt.setString(1, newStatus);
-                        stmt.setInt(2, appointmentId);
-                        stmt.executeUpdate();
-                    } catch (SQLException ex) {
-                        showError("Database Error", "Failed to update status: " + ex.getMessage());
-                    }
-                    return null;
-                }
-
-                @Override
-                protected void done() {
-                    loadAppointments();
-                }
-            };
-            worker.execute();
-        }
     }
 }
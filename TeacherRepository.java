@@ -0,0 +1,17 @@
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+public interface TeacherRepository {
+    List<Teacher> findByStatus(String status) throws SQLException;
+
+    void updateStatus(int teacherId, String status) throws SQLException;
+
+    // WeeklyAvailability.NONE when the teacher has not published any
+    WeeklyAvailability findAvailability(int teacherId) throws SQLException;
+
+    // Teacher id to availability, for every teacher who has published some
+    Map<Integer, WeeklyAvailability> findAllAvailability() throws SQLException;
+
+    void saveAvailability(int teacherId, WeeklyAvailability availability) throws SQLException;
+}
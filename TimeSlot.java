@@ -0,0 +1,71 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+// Half-open [start, end) appointment time. Parses "yyyy-MM-dd HH:mm" (default length) or
+// "yyyy-MM-dd HH:mm-HH:mm", where an end at or before the start means the next day, so a slot
+// crossing midnight round-trips through format(). Slots of a day or more write the end date too.
+public record TimeSlot(LocalDateTime start, LocalDateTime end) {
+    public static final Duration DEFAULT_LENGTH = Duration.ofMinutes(30);
+    public static final String FORMAT_HINT = "yyyy-MM-dd HH:mm or yyyy-MM-dd HH:mm-HH:mm";
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+    public TimeSlot {
+        if (!end.isAfter(start)) {
+            throw new IllegalArgumentException("End time must be after start time");
+        }
+    }
+
+    public static TimeSlot parse(String text) {
+        String value = text.trim();
+        try {
+            int dash = value.indexOf('-', "yyyy-MM-dd".length());
+            if (dash < 0) {
+                LocalDateTime start = LocalDateTime.parse(value, DATE_TIME);
+                return new TimeSlot(start, start.plus(DEFAULT_LENGTH));
+            }
+            LocalDateTime start = LocalDateTime.parse(value.substring(0, dash).trim(), DATE_TIME);
+            String endText = value.substring(dash + 1).trim();
+            if (endText.length() > "HH:mm".length()) {
+                return new TimeSlot(start, LocalDateTime.parse(endText, DATE_TIME));
+            }
+            LocalDateTime end = start.with(LocalTime.parse(endText, TIME));
+            return new TimeSlot(start, end.isAfter(start) ? end : end.plusDays(1));
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Expected " + FORMAT_HINT, ex);
+        }
+    }
+
+    public static TimeSlot ofMinutes(long startMinute, long endMinute) {
+        return new TimeSlot(toDateTime(startMinute), toDateTime(endMinute));
+    }
+
+    // Wall-clock minutes, used as interval keys; no time zone is involved
+    public long startMinute() {
+        return toMinute(start);
+    }
+
+    public long endMinute() {
+        return toMinute(end);
+    }
+
+    public static long toMinute(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    public static LocalDateTime toDateTime(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+
+    public String format() {
+        if (end.isBefore(start.plusDays(1))) {
+            return start.format(DATE_TIME) + "-" + end.toLocalTime().format(TIME);
+        }
+        return start.format(DATE_TIME) + "-" + end.format(DATE_TIME);
+    }
+}
@@ -0,0 +1,145 @@
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Read-through cache with a time-to-live and LRU eviction beyond maxEntries. Concurrent
+// misses for the same key share a single load.
+public class TtlCache<K, V> {
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key) throws Exception;
+    }
+
+    // Misses that joined another caller's load count as misses but not as loads
+    public record Stats(long hits, long misses, long loads, long evictions, int size) {
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Loader<K, V> loader;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<K, Entry<V>> entries;     // guarded by lock
+    private final Map<K, CompletableFuture<V>> loading = new HashMap<>(); // guarded by lock
+    private long generation;                              // guarded by lock; bumped on invalidation
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TtlCache(int maxEntries, Duration ttl, Loader<K, V> loader) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.loader = loader;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > TtlCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public V get(K key) throws Exception {
+        CompletableFuture<V> pending;
+        boolean owner = false;
+        long loadGeneration = 0;
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.expiresAt < 0) {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+            misses.increment();
+            pending = loading.get(key);
+            if (pending == null) {
+                pending = new CompletableFuture<>();
+                loading.put(key, pending);
+                owner = true;
+                loadGeneration = generation;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!owner) {
+            return await(pending);
+        }
+
+        try {
+            loads.increment();
+            V value = loader.load(key);
+            lock.lock();
+            try {
+                loading.remove(key, pending);
+                // Don't cache a value that was loaded before an invalidation
+                if (loadGeneration == generation) {
+                    entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+                }
+            } finally {
+                lock.unlock();
+            }
+            pending.complete(value);
+            return value;
+        } catch (Exception ex) {
+            lock.lock();
+            try {
+                loading.remove(key, pending);
+            } finally {
+                lock.unlock();
+            }
+            pending.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+            generation++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            entries.clear();
+            generation++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(hits.sum(), misses.sum(), loads.sum(), evictions.sum(), entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private V await(CompletableFuture<V> pending) throws Exception {
+        try {
+            return pending.get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception cause ? cause : ex;
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+}
@@ -0,0 +1,3 @@
+// version goes up by one with every change made through UserRepository.update
+public record User(int id, String name, String role, String status, int version) {
+}
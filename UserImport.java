@@ -0,0 +1,342 @@
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// Bulk user import from a CSV or TSV file (tab-separated when the file ends in .tsv or its first
+// line contains a tab). The file is streamed in chunks of CHUNK_ROWS records: each chunk is
+// validated in parallel, checked in file order against the rows before it for duplicate ids and
+// logins, and inserted in JDBC batches of -Dschedule.import.batchSize rows (default 1000), each
+// batch its own transaction. A bad row is reported and skipped; it never stops the import.
+//
+// Columns are id, name, role, password and status. With a header line they may come in any order
+// and id and status may be left out; without one they must be in that order. An empty id lets the
+// database choose one and an empty status means Inactive, as for users added by hand.
+//
+// Passwords are hashed during validation, at the lower cost -Dschedule.import.pbkdf2Iterations
+// (default 10000) so a large file takes minutes rather than hours of CPU. AuthService redoes the
+// hash at the full cost on each user's first login. The plaintext is never stored.
+public final class UserImport {
+    private static final int BATCH_SIZE = Integer.getInteger("schedule.import.batchSize", 1000);
+    private static final int CHUNK_ROWS = 5 * BATCH_SIZE;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int HASH_ITERATIONS = Math.min(PasswordHasher.ITERATIONS,
+        Integer.getInteger("schedule.import.pbkdf2Iterations", 10_000));
+    private static final List<String> COLUMNS = List.of("id", "name", "role", "password", "status");
+
+    public record RowError(long line, String message) {
+    }
+
+    // errors holds the first MAX_REPORTED_ERRORS problems; failed counts all of them
+    public record Result(long rows, long imported, long failed, List<RowError> errors, long elapsedNanos) {
+    }
+
+    private UserImport() {
+    }
+
+    // Runs on the calling thread and checks for interruption between chunks; rows committed
+    // before an interrupt stay imported. onProgress receives the percentage of the file read.
+    public static Result run(Path file, IntConsumer onProgress) throws IOException, SQLException, InterruptedException {
+        long started = System.nanoTime();
+        long size = Math.max(1, Files.size(file));
+        UserRepository users = Repositories.users();
+        char delimiter = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : ',';
+        Set<Integer> seenIds = new HashSet<>();
+        Set<String> seenLogins = new HashSet<>();
+        Errors errors = new Errors();
+        long rows = 0;
+        long imported = 0;
+
+        try (CountingInputStream in = new CountingInputStream(Files.newInputStream(file));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            if (firstLineHasTab(reader)) {
+                delimiter = '\t';
+            }
+            CsvReader csv = new CsvReader(reader, delimiter);
+            Map<String, Integer> columns = null;
+            int lastPercent = -1;
+
+            while (true) {
+                List<Record> chunk = new ArrayList<>(CHUNK_ROWS);
+                Record record;
+                while (chunk.size() < CHUNK_ROWS && (record = csv.next()) != null) {
+                    if (record.isBlank()) {
+                        continue;
+                    }
+                    if (columns == null) {
+                        columns = columnsOf(record);
+                        if (columns != null) {
+                            for (String required : List.of("name", "role", "password")) {
+                                if (!columns.containsKey(required)) {
+                                    throw new IOException("The header has no " + required + " column");
+                                }
+                            }
+                            continue;
+                        }
+                        columns = positionalColumns();
+                    }
+                    chunk.add(record);
+                }
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                rows += chunk.size();
+
+                Map<String, Integer> layout = columns;
+                Row[] validated = IntStream.range(0, chunk.size()).parallel()
+                    .mapToObj(i -> validate(chunk.get(i), layout))
+                    .toArray(Row[]::new);
+
+                List<UserRepository.NewUser> toInsert = new ArrayList<>(chunk.size());
+                List<Long> lines = new ArrayList<>(chunk.size());
+                for (Row row : validated) {
+                    if (row.error != null) {
+                        errors.add(row.line, row.error);
+                    } else if (row.user.id() != null && !seenIds.add(row.user.id())) {
+                        errors.add(row.line, "ID " + row.user.id() + " appears earlier in the file");
+                    } else if (!seenLogins.add(row.user.name() + '\u0000' + row.user.role())) {
+                        errors.add(row.line, row.user.role() + " " + row.user.name() + " appears earlier in the file");
+                    } else {
+                        toInsert.add(row.user);
+                        lines.add(row.line);
+                    }
+                }
+
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                boolean[] inserted = users.insertAll(toInsert, BATCH_SIZE);
+                for (int i = 0; i < inserted.length; i++) {
+                    if (inserted[i]) {
+                        imported++;
+                    } else {
+                        errors.add(lines.get(i), "ID or " + toInsert.get(i).role().toLowerCase(Locale.ROOT)
+                            + " name already exists");
+                    }
+                }
+
+                int percent = (int) Math.min(100, in.count * 100 / size);
+                if (percent != lastPercent) {
+                    onProgress.accept(percent);
+                    lastPercent = percent;
+                }
+            }
+        }
+        Metrics.count("users.imported", imported);
+        return new Result(rows, imported, errors.count, List.copyOf(errors.reported), System.nanoTime() - started);
+    }
+
+    private static boolean firstLineHasTab(BufferedReader reader) throws IOException {
+        int limit = 64 * 1024;
+        reader.mark(limit);
+        try {
+            for (int i = 0, c; i < limit && (c = reader.read()) != -1 && c != '\n'; i++) {
+                if (c == '\t') {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    // Null when the record isn't a header
+    private static Map<String, Integer> columnsOf(Record record) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < record.fields.size(); i++) {
+            String name = record.fields.get(i).trim().toLowerCase(Locale.ROOT);
+            if (!COLUMNS.contains(name)) {
+                return null;
+            }
+            columns.put(name, i);
+        }
+        return columns;
+    }
+
+    private static Map<String, Integer> positionalColumns() {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            columns.put(COLUMNS.get(i), i);
+        }
+        return columns;
+    }
+
+    private static Row validate(Record record, Map<String, Integer> columns) {
+        if (record.fields.size() > columns.size()) {
+            return Row.error(record.line, "Expected at most " + columns.size() + " fields but found " + record.fields.size());
+        }
+        String idText = field(record, columns, "id").trim();
+        String name = field(record, columns, "name").trim();
+        String role = field(record, columns, "role").trim();
+        String password = field(record, columns, "password");
+        String status = field(record, columns, "status").trim();
+
+        Integer id = null;
+        if (!idText.isEmpty()) {
+            try {
+                id = Integer.valueOf(idText);
+            } catch (NumberFormatException ex) {
+                return Row.error(record.line, "ID '" + idText + "' is not a number");
+            }
+            if (id <= 0) {
+                return Row.error(record.line, "ID must be positive");
+            }
+        }
+        if (name.isEmpty() || name.length() > 100) {
+            return Row.error(record.line, "Name must be 1 to 100 characters");
+        }
+        if (role.equalsIgnoreCase("Student")) {
+            role = "Student";
+        } else if (role.equalsIgnoreCase("Teacher")) {
+            role = "Teacher";
+        } else {
+            return Row.error(record.line, "Role must be Student or Teacher, not '" + role + "'");
+        }
+        if (password.isEmpty() || password.length() > 255) {
+            return Row.error(record.line, "Password must be 1 to 255 characters");
+        }
+        if (status.isEmpty() || status.equalsIgnoreCase("Inactive")) {
+            status = "Inactive";
+        } else if (status.equalsIgnoreCase("Active")) {
+            status = "Active";
+        } else {
+            return Row.error(record.line, "Status must be Active or Inactive, not '" + status + "'");
+        }
+        return new Row(record.line, new UserRepository.NewUser(id, name, role,
+            PasswordHasher.hash(password, HASH_ITERATIONS), status), null);
+    }
+
+    private static String field(Record record, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        return index != null && index < record.fields.size() ? record.fields.get(index) : "";
+    }
+
+    private record Record(long line, List<String> fields) {
+        boolean isBlank() {
+            return fields.size() == 1 && fields.get(0).isBlank();
+        }
+    }
+
+    private record Row(long line, UserRepository.NewUser user, String error) {
+        static Row error(long line, String message) {
+            return new Row(line, null, message);
+        }
+    }
+
+    private static final class Errors {
+        final List<RowError> reported = new ArrayList<>();
+        long count;
+
+        void add(long line, String message) {
+            if (count++ < MAX_REPORTED_ERRORS) {
+                reported.add(new RowError(line, message));
+            }
+        }
+    }
+
+    // RFC 4180 records: quoted fields may contain the delimiter, doubled quotes and line breaks
+    private static final class CsvReader {
+        private final BufferedReader reader;
+        private final char delimiter;
+        private long line = 1;
+
+        CsvReader(BufferedReader reader, char delimiter) {
+            this.reader = reader;
+            this.delimiter = delimiter;
+        }
+
+        // Null at the end of the file
+        Record next() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            long startLine = line;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (c == -1) {
+                    fields.add(field.toString());
+                    return new Record(startLine, fields);
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.isEmpty()) {
+                    quoted = true;
+                } else if (c == delimiter) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    line++;
+                    fields.add(field.toString());
+                    return new Record(startLine, fields);
+                } else {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+        }
+    }
+
+    // Counts the bytes handed to the decoder, for progress against the file size
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+public interface UserRepository {
+    // What AuthService needs to check a password. Users created before password hashing have
+    // only legacyPassword (plaintext) until their next login.
+    record Credentials(int id, String passwordHash, String legacyPassword) {
+    }
+
+    // A user to create. id may be null to let the database choose one. Only a hash is ever stored;
+    // one made at a lower cost is redone by AuthService at the user's next login.
+    record NewUser(Integer id, String name, String role, String passwordHash, String status) {
+    }
+
+    // The outcome of update. When it was not updated, current is the user as stored now, for the
+    // caller to show, or null when the user has been deleted.
+    record UpdateResult(boolean updated, User current) {
+    }
+
+    // Null when no user has this name and role
+    Credentials findCredentials(String name, String role) throws SQLException;
+
+    // Stores the hash and clears any plaintext password
+    void setPasswordHash(int id, String passwordHash) throws SQLException;
+
+    // Up to `limit` users with id > afterId, in id order
+    List<User> findPageAfter(int afterId, int limit) throws SQLException;
+
+    // Id of the user `offset` positions past afterId in id order, or null if there are fewer users.
+    // Exact up to exactOffsetLimit(); beyond it the id is only near that position (see
+    // JdbcUserRepository), but it always exists.
+    Integer idAtOffsetAfter(int afterId, int offset) throws SQLException;
+
+    default int exactOffsetLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    // Every user in id order, one at a time and without holding them all in memory; for DataExport
+    void streamUsers(DataExport.RowSink<User> sink) throws SQLException, IOException;
+
+    // Up to `limit` users whose name starts with prefix (ignoring case), ordered by name and role
+    List<User> findByNamePrefix(String prefix, int limit) throws SQLException;
+
+    // May be approximate
+    long estimateCount() throws SQLException;
+
+    // False when the id or the (name, role) pair is already taken
+    boolean insert(NewUser user) throws SQLException;
+
+    // Inserts in batches of batchSize, committing each batch. A row that is rejected (duplicate
+    // id or login, constraint violation) doesn't stop the others. Returns one flag per row, true
+    // where it was inserted.
+    boolean[] insertAll(List<NewUser> users, int batchSize) throws SQLException;
+
+    // Sets name and role only if the user is still at `version` (as last read), bumping the version;
+    // otherwise someone else changed or deleted the user since, and nothing is written
+    UpdateResult update(int id, int version, String name, String role) throws SQLException;
+
+    boolean delete(int id) throws SQLException;
+}
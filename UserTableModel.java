@@ -0,0 +1,289 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.table.AbstractTableModel;
+
+// Virtual table over the users table. Rows are fetched a page at a time by keyset
+// (WHERE id > ? ORDER BY id LIMIT ?) when the table first asks for them, and only the
+// most recently used pages are kept in memory. While a search is active the table instead shows
+// the first SEARCH_LIMIT users whose name starts with the search text.
+//
+// A far jump starts its page from an interpolated id (see UserRepository.idAtOffsetAfter), so that
+// page, and every page read on from it, sits only roughly at its row number. Such pages never
+// settle the row count; it stays an estimate until the end is reached by keyset from page 0 or from
+// an exact skip, and an exact start found later replaces the guessed one.
+public class UserTableModel extends AbstractTableModel {
+    private static final Logger LOG = Logger.getLogger(UserTableModel.class.getName());
+    private static final String[] COLUMNS = {"ID", "Name", "Role", "Status"};
+    private static final String LOADING = "...";
+    private static final int SEARCH_LIMIT = 200;
+
+    private final int pageSize;
+    private final int maxCachedPages;
+
+    // Page number -> id the page starts after. Only pages we have seen or computed are present.
+    private final TreeMap<Integer, Integer> pageStartKeys = new TreeMap<>();
+    // Pages of pageStartKeys whose start was interpolated, or read on from such a page
+    private final Set<Integer> approximateStarts = new HashSet<>();
+    private final Map<Integer, List<User>> pages;
+    private final Map<Integer, AsyncDb.Task> loading = new HashMap<>();
+    private AsyncDb.Task estimateTask;
+    private AsyncDb.Task searchTask;
+    private String searchPrefix;       // null when browsing all users
+    private List<User> searchResults;  // null until the current search has returned
+    private int rowCount;
+    private boolean rowCountExact;
+
+    public UserTableModel() {
+        this(200, 20);
+    }
+
+    public UserTableModel(int pageSize, int maxCachedPages) {
+        this.pageSize = pageSize;
+        this.maxCachedPages = maxCachedPages;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<User>> eldest) {
+                return size() > UserTableModel.this.maxCachedPages;
+            }
+        };
+        pageStartKeys.put(0, Integer.MIN_VALUE);
+    }
+
+    // Drops every cached page and starts again from a fresh row count estimate, or reruns the search
+    public void reload() {
+        cancelLoads();
+        if (searchPrefix != null) {
+            if (searchResults == null) {
+                rowCount = 0;
+                fireTableDataChanged();
+            }
+            runSearch();
+            return;
+        }
+        pages.clear();
+        pageStartKeys.clear();
+        approximateStarts.clear();
+        pageStartKeys.put(0, Integer.MIN_VALUE);
+        rowCount = 0;
+        rowCountExact = false;
+        fireTableDataChanged();
+
+        estimateTask = AsyncDb.submit("users.count", Repositories.users()::estimateCount, this::applyEstimate, ex -> {
+            LOG.log(Level.WARNING, "Could not estimate user count", ex);
+            applyEstimate(0L);
+        });
+    }
+
+    // Shows only users whose name starts with prefix; an empty prefix goes back to browsing everyone.
+    // A newer search cancels an older one still in flight, so results never arrive out of order.
+    public void search(String prefix) {
+        String next = prefix.isEmpty() ? null : prefix;
+        if (next == null ? searchPrefix == null : next.equals(searchPrefix)) {
+            return;
+        }
+        searchPrefix = next;
+        searchResults = null;
+        reload();
+    }
+
+    private void runSearch() {
+        String prefix = searchPrefix;
+        searchTask = AsyncDb.submit("users.search",
+            () -> Repositories.users().findByNamePrefix(prefix, SEARCH_LIMIT), rows -> {
+                searchResults = rows;
+                rowCount = rows.size();
+                rowCountExact = rows.size() < SEARCH_LIMIT;
+                fireTableDataChanged();
+            }, ex -> LOG.log(Level.WARNING, "User search failed", ex));
+    }
+
+    // Abandons in-flight fetches, e.g. when the table is no longer on screen
+    public void cancelLoads() {
+        if (estimateTask != null) {
+            estimateTask.cancel();
+        }
+        if (searchTask != null) {
+            searchTask.cancel();
+        }
+        loading.values().forEach(AsyncDb.Task::cancel);
+        loading.clear();
+    }
+
+    private void applyEstimate(long estimate) {
+        // Always expose at least one page so the first fetch establishes the real size
+        rowCount = (int) Math.max(Math.min(estimate, Integer.MAX_VALUE), pageSize);
+        fireTableDataChanged();
+    }
+
+    public String getCountText() {
+        if (searchPrefix != null) {
+            return searchResults == null ? "Searching..."
+                : (rowCountExact ? "" : "first ") + String.format("%,d", rowCount) + " matches";
+        }
+        return (rowCountExact ? "" : "~") + String.format("%,d", rowCount) + " users";
+    }
+
+    // Returns null while the row's page is still being fetched
+    public User getUserAt(int row) {
+        if (searchPrefix != null) {
+            return searchResults != null && row < searchResults.size() ? searchResults.get(row) : null;
+        }
+        List<User> page = pages.get(row / pageSize);
+        int offset = row % pageSize;
+        return page != null && offset < page.size() ? page.get(offset) : null;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        User user;
+        if (searchPrefix != null) {
+            user = getUserAt(row);
+            if (user == null) {
+                return "";
+            }
+        } else {
+            int pageNumber = row / pageSize;
+            List<User> page = pages.get(pageNumber);
+            if (page == null) {
+                requestPage(pageNumber);
+                return column == 0 ? "" : LOADING;
+            }
+            int offset = row % pageSize;
+            if (offset >= page.size()) {
+                return "";
+            }
+            user = page.get(offset);
+        }
+        switch (column) {
+            case 0: return String.valueOf(user.id());
+            case 1: return user.name();
+            case 2: return user.role();
+            default: return user.status();
+        }
+    }
+
+    private void requestPage(int pageNumber) {
+        if (loading.containsKey(pageNumber)) {
+            return;
+        }
+        Map.Entry<Integer, Integer> known = pageStartKeys.floorEntry(pageNumber);
+        int knownPage = known.getKey();
+        int knownKey = known.getValue();
+        boolean knownExact = !approximateStarts.contains(knownPage);
+
+        AsyncDb.Task task = AsyncDb.submit("users.page", () -> {
+            UserRepository users = Repositories.users();
+            Integer startKey = knownKey;
+            boolean exact = knownExact;
+            if (knownPage < pageNumber) {
+                // Skip ahead on the primary key index; far jumps are interpolated from the id range
+                // rather than counted row by row, so they only land near the requested row
+                int offset = (pageNumber - knownPage) * pageSize - 1;
+                startKey = users.idAtOffsetAfter(knownKey, offset);
+                exact = knownExact && offset <= users.exactOffsetLimit();
+            }
+            List<User> rows = startKey == null ? List.<User>of() : users.findPageAfter(startKey, pageSize);
+            return new Page(startKey, exact, rows);
+        }, page -> {
+            loading.remove(pageNumber);
+            applyPage(pageNumber, page);
+        }, ex -> {
+            loading.remove(pageNumber);
+            LOG.log(Level.WARNING, "Failed to load users page " + pageNumber, ex);
+        });
+        loading.put(pageNumber, task);
+    }
+
+    private void applyPage(int pageNumber, Page page) {
+        int firstRow = pageNumber * pageSize;
+        Integer known = pageStartKeys.get(pageNumber);
+        if (!page.exact() && known != null && !approximateStarts.contains(pageNumber)
+                && !known.equals(page.startKey())) {
+            // An exact start arrived while this guess was loading; the table asks again from there
+            if (firstRow < rowCount) {
+                fireTableRowsUpdated(firstRow, Math.min(firstRow + pageSize, rowCount) - 1);
+            }
+            return;
+        }
+        if (page.startKey() != null) {
+            recordStart(pageNumber, page.startKey(), page.exact());
+        }
+        pages.put(pageNumber, page.rows());
+
+        int size = page.rows().size();
+        if (size == pageSize) {
+            recordStart(pageNumber + 1, page.rows().get(size - 1).id(), page.exact());
+            if (!rowCountExact && firstRow + size >= rowCount) {
+                // The estimate was low; expose another page so scrolling can continue
+                rowCount = firstRow + 2 * pageSize;
+                fireTableDataChanged();
+                return;
+            }
+        } else if (!page.exact()) {
+            // Where this page really sits is unknown, so its end says nothing about the row count
+        } else if (size > 0 || pageNumber == 0) {
+            rowCount = firstRow + size;
+            rowCountExact = true;
+            fireTableDataChanged();
+            return;
+        } else if (firstRow < rowCount) {
+            // Scrolled past the real end; the last non-empty page settles the exact count
+            rowCount = firstRow;
+            List<User> previous = pages.get(pageNumber - 1);
+            rowCountExact = previous != null && previous.size() == pageSize
+                && !approximateStarts.contains(pageNumber - 1);
+            fireTableDataChanged();
+            return;
+        }
+        if (firstRow < rowCount) {
+            fireTableRowsUpdated(firstRow, Math.min(firstRow + pageSize, rowCount) - 1);
+        }
+    }
+
+    // The first start recorded for a page stays unless an exact one replaces a guess. A cached page
+    // read from a guessed start that turns out wrong is dropped, so it is fetched again from the
+    // right place.
+    private void recordStart(int pageNumber, int startKey, boolean exact) {
+        Integer current = pageStartKeys.get(pageNumber);
+        if (current != null && (!exact || !approximateStarts.contains(pageNumber))) {
+            return;
+        }
+        pageStartKeys.put(pageNumber, startKey);
+        if (exact) {
+            approximateStarts.remove(pageNumber);
+        } else {
+            approximateStarts.add(pageNumber);
+        }
+        if (current != null && current != startKey && pages.remove(pageNumber) != null) {
+            int firstRow = pageNumber * pageSize;
+            if (firstRow < rowCount) {
+                fireTableRowsUpdated(firstRow, Math.min(firstRow + pageSize, rowCount) - 1);
+            }
+        }
+    }
+
+    private record Page(Integer startKey, boolean exact, List<User> rows) {
+    }
+}
@@ -0,0 +1,250 @@
+import java.awt.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+
+// Week-at-a-time calendar of one user's appointments. Only the visible week is fetched, with a
+// start_at range query; once it is on screen the weeks either side are fetched in the background,
+// so stepping back and forth through years of history shows each week immediately. The most
+// recently used weeks are kept, and changes pushed by AppointmentFeed are patched into them.
+public class WeekCalendar extends JPanel {
+    private static final Logger LOG = Logger.getLogger(WeekCalendar.class.getName());
+    private static final int CACHED_WEEKS = 16;
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("MMM d");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+    @FunctionalInterface
+    public interface RangeQuery {
+        // Appointments starting in [from, to)
+        List<Appointment> find(LocalDateTime from, LocalDateTime to) throws Exception;
+    }
+
+    private final String operation;
+    private final RangeQuery query;
+    private final Function<Appointment, String> otherParty;
+    private final Map<LocalDate, List<Appointment>> weeks = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LocalDate, List<Appointment>> eldest) {
+            return size() > CACHED_WEEKS;
+        }
+    };
+    private final Map<LocalDate, AsyncDb.Task> loading = new HashMap<>();
+    private final WeekModel model = new WeekModel();
+    private final JTable table = new JTable(model);
+    private final JLabel lblWeek = new JLabel("", SwingConstants.CENTER);
+    private LocalDate shownWeek;
+
+    // operation names the fetches in Metrics; otherParty is the name shown for each appointment
+    public WeekCalendar(String operation, RangeQuery query, Function<Appointment, String> otherParty) {
+        this.operation = operation;
+        this.query = query;
+        this.otherParty = otherParty;
+        setLayout(new BorderLayout(5, 5));
+
+        JButton btnPrevious = new JButton("< Previous");
+        JButton btnToday = new JButton("Today");
+        JButton btnNext = new JButton("Next >");
+        JPanel navigation = new JPanel(new BorderLayout());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttons.add(btnPrevious);
+        buttons.add(btnToday);
+        buttons.add(btnNext);
+        navigation.add(buttons, BorderLayout.WEST);
+        navigation.add(lblWeek, BorderLayout.CENTER);
+        add(navigation, BorderLayout.NORTH);
+
+        table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                           boolean hasFocus, int row, int column) {
+                super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+                setVerticalAlignment(SwingConstants.TOP);
+                return this;
+            }
+        });
+        table.getTableHeader().setReorderingAllowed(false);
+        table.getColumnModel().getColumn(0).setMaxWidth(60);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        btnPrevious.addActionListener(e -> showWeek(shownWeek.minusWeeks(1)));
+        btnToday.addActionListener(e -> showWeek(weekOf(LocalDateTime.now())));
+        btnNext.addActionListener(e -> showWeek(shownWeek.plusWeeks(1)));
+    }
+
+    // Shows the current week the first time the calendar is opened; later the week on screen stays
+    public void open() {
+        if (shownWeek == null) {
+            showWeek(weekOf(LocalDateTime.now()));
+        }
+    }
+
+    public void showWeek(LocalDate monday) {
+        shownWeek = monday;
+        lblWeek.setText("Week of " + monday.format(DAY) + ", " + monday.getYear());
+        List<Appointment> cached = weeks.get(monday);
+        model.show(monday, cached);
+        fitRows();
+        if (cached == null) {
+            load(monday);
+        } else {
+            prefetchAround(monday);
+        }
+    }
+
+    // Feed changes: each appointment moves to the cached week it now starts in, if any
+    public void applyChanges(List<Appointment> changes) {
+        for (Appointment change : changes) {
+            for (List<Appointment> week : weeks.values()) {
+                week.removeIf(a -> a.id() == change.id());
+            }
+            if (change.slot() == null) {
+                continue;
+            }
+            List<Appointment> week = weeks.get(weekOf(change.slot().start()));
+            if (week != null) {
+                week.add(change);
+                week.sort(Comparator.comparing(a -> a.slot().start()));
+            }
+        }
+        if (shownWeek != null) {
+            model.show(shownWeek, weeks.get(shownWeek));
+            fitRows();
+        }
+    }
+
+    private void load(LocalDate monday) {
+        if (loading.containsKey(monday)) {
+            return;
+        }
+        LocalDateTime from = monday.atStartOfDay();
+        loading.put(monday, AsyncDb.submit(operation, () -> query.find(from, from.plusWeeks(1)), rows -> {
+            loading.remove(monday);
+            weeks.put(monday, new ArrayList<>(rows));
+            if (monday.equals(shownWeek)) {
+                model.show(monday, weeks.get(monday));
+                fitRows();
+                prefetchAround(monday);
+            }
+        }, ex -> {
+            loading.remove(monday);
+            LOG.log(Level.WARNING, "Failed to load calendar week " + monday, ex);
+            if (monday.equals(shownWeek)) {
+                JOptionPane.showMessageDialog(this, "Error loading appointments for the week of " + monday + ".");
+            }
+        }));
+    }
+
+    private void prefetchAround(LocalDate monday) {
+        for (LocalDate neighbour : List.of(monday.minusWeeks(1), monday.plusWeeks(1))) {
+            if (!weeks.containsKey(neighbour)) {
+                load(neighbour);
+            }
+        }
+    }
+
+    // Tall enough for every appointment in the busiest cell of each hour
+    private void fitRows() {
+        int lineHeight = table.getFontMetrics(table.getFont()).getHeight();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            table.setRowHeight(row, Math.max(1, model.linesIn(row)) * lineHeight + 4);
+        }
+    }
+
+    private static LocalDate weekOf(LocalDateTime time) {
+        return time.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    private class WeekModel extends AbstractTableModel {
+        private LocalDate monday = weekOf(LocalDateTime.now());
+        private final List<List<List<Appointment>>> cells = new ArrayList<>(); // [hour][day]
+        private boolean loaded;
+
+        void show(LocalDate monday, List<Appointment> appointments) {
+            this.monday = monday;
+            loaded = appointments != null;
+            cells.clear();
+            for (int hour = 0; hour < 24; hour++) {
+                List<List<Appointment>> days = new ArrayList<>(7);
+                for (int day = 0; day < 7; day++) {
+                    days.add(new ArrayList<>());
+                }
+                cells.add(days);
+            }
+            if (appointments != null) {
+                for (Appointment a : appointments) {
+                    LocalDateTime start = a.slot().start();
+                    cells.get(start.getHour()).get(start.getDayOfWeek().getValue() - 1).add(a);
+                }
+            }
+            fireTableStructureChanged();
+            table.getColumnModel().getColumn(0).setMaxWidth(60);
+        }
+
+        int linesIn(int row) {
+            int lines = 0;
+            for (List<Appointment> cell : cells.get(row)) {
+                lines = Math.max(lines, cell.size());
+            }
+            return lines;
+        }
+
+        @Override
+        public int getRowCount() {
+            return cells.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 8;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            if (column == 0) {
+                return "";
+            }
+            LocalDate date = monday.plusDays(column - 1);
+            return date.getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.getDefault()) + " " + date.format(DAY);
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            if (column == 0) {
+                return String.format("%02d:00", row);
+            }
+            List<Appointment> cell = cells.get(row).get(column - 1);
+            if (cell.isEmpty()) {
+                return !loaded && row == 0 && column == 1 ? "Loading..." : "";
+            }
+            StringBuilder html = new StringBuilder("<html>");
+            for (Appointment a : cell) {
+                if (html.length() > "<html>".length()) {
+                    html.append("<br>");
+                }
+                html.append(a.slot().start().format(TIME)).append(' ')
+                    .append(escape(otherParty.apply(a))).append(" (").append(a.status()).append(')');
+            }
+            return html.append("</html>").toString();
+        }
+
+        private String escape(String text) {
+            return text == null ? "" : text.replace("&", "&amp;").replace("<", "&lt;");
+        }
+    }
+}
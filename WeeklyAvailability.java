@@ -0,0 +1,88 @@
+import java.nio.ByteBuffer;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// A teacher's recurring weekly availability as a bitmap: bit i is set when the teacher is free in
+// the i-th 15-minute slot of the week, counting from Monday 00:00 (672 slots in 11 longs). Stored
+// as its 88 bytes in teacher_availability. Immutable.
+public final class WeeklyAvailability {
+    public static final int SLOT_MINUTES = 15;
+    public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    public static final int SLOTS = 7 * SLOTS_PER_DAY;
+    static final int WORDS = (SLOTS + 63) / 64;
+    public static final int BYTES = WORDS * Long.BYTES;
+
+    public static final WeeklyAvailability NONE = new WeeklyAvailability(new long[WORDS]);
+
+    private final long[] words;
+
+    private WeeklyAvailability(long[] words) {
+        this.words = words;
+    }
+
+    // Bits at SLOTS and above are ignored
+    public static WeeklyAvailability of(BitSet slots) {
+        long[] words = Arrays.copyOf(slots.toLongArray(), WORDS);
+        words[WORDS - 1] &= lastWordMask();
+        return new WeeklyAvailability(words);
+    }
+
+    public static WeeklyAvailability fromBytes(byte[] bytes) {
+        if (bytes.length != BYTES) {
+            throw new IllegalArgumentException("Expected " + BYTES + " bytes of availability, got " + bytes.length);
+        }
+        long[] words = new long[WORDS];
+        ByteBuffer.wrap(bytes).asLongBuffer().get(words);
+        words[WORDS - 1] &= lastWordMask();
+        return new WeeklyAvailability(words);
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(BYTES);
+        buffer.asLongBuffer().put(words);
+        return buffer.array();
+    }
+
+    public BitSet toBitSet() {
+        return BitSet.valueOf(words);
+    }
+
+    public static int slotOf(DayOfWeek day, LocalTime time) {
+        return (day.getValue() - 1) * SLOTS_PER_DAY + time.toSecondOfDay() / 60 / SLOT_MINUTES;
+    }
+
+    public boolean isAvailable(int slot) {
+        return (words[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The backing words, not a copy; for SlotFinder's word-parallel search only
+    long[] words() {
+        return words;
+    }
+
+    static long lastWordMask() {
+        int used = SLOTS - (WORDS - 1) * 64;
+        return used == 64 ? -1L : (1L << used) - 1;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof WeeklyAvailability that && Arrays.equals(words, that.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+}
@@ -0,0 +1,478 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+// Drives concurrent request/approve traffic through BookingService and AppointmentRepository, the
+// same paths the student and teacher panels use, and reports throughput, latency percentiles,
+// conflict and error rates and connection pool use. Like the JMH benchmarks it runs against
+// InMemoryStore unless started with -Dschedule.storage=jdbc, and then seeds its teachers and
+// students (ids from 3,000,000 and 4,000,000) into the database configured by -Dschedule.db.url.
+// The write journal is used whenever Repositories opens one, so -Dschedule.journal.enabled
+// compares write-behind with direct writes.
+//
+// Usage: java WorkloadSimulator [--students 200] [--teachers 20] [--duration 30]
+//                               [--arrivalRate 0] [--studentThinkMs 500] [--teacherThinkMs 2000]
+//                               [--decisionBatch 10] [--approveRatio 0.8] [--days 14]
+//                               [--maxInFlight 10000] [--out workload.json]
+//
+// Each teacher loops: fetch the changes since its last look, decide up to decisionBatch pending
+// requests (approved with probability approveRatio, otherwise declined), then think. Students
+// request a random half-hour between 08:00 and 18:00 on one of the next `days` days from a random
+// teacher, and take the suggested slot once if theirs was taken. With --arrivalRate 0 each student
+// is a closed loop that thinks between requests; a positive rate instead starts requests from
+// random students as a Poisson process of that many per second, timed from when they were due so
+// a slow backend shows up as latency rather than as fewer requests.
+public class WorkloadSimulator {
+    private static final int FIRST_STUDENT_ID = 3_000_000;
+    private static final int FIRST_TEACHER_ID = 4_000_000;
+    private static final int FIRST_HOUR = 8;
+    private static final int HALF_HOURS_PER_DAY = 20;
+    private static final long POOL_SAMPLE_MILLIS = 100;
+
+    private final int students;
+    private final int teachers;
+    private final long durationNanos;
+    private final double arrivalRate;
+    private final long studentThinkMillis;
+    private final long teacherThinkMillis;
+    private final int decisionBatch;
+    private final double approveRatio;
+    private final int days;
+    private final int maxInFlight;
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder booked = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder bookedOnRetry = new LongAdder();
+    private final LongAdder approved = new LongAdder();
+    private final LongAdder declined = new LongAdder();
+    private final LongAdder statusConflicts = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final PoolSampler poolSampler = new PoolSampler();
+    private volatile boolean running = true;
+
+    WorkloadSimulator(Map<String, String> options) {
+        students = Integer.parseInt(options.getOrDefault("students", "200"));
+        teachers = Integer.parseInt(options.getOrDefault("teachers", "20"));
+        durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "30")));
+        arrivalRate = Double.parseDouble(options.getOrDefault("arrivalRate", "0"));
+        studentThinkMillis = Long.parseLong(options.getOrDefault("studentThinkMs", "500"));
+        teacherThinkMillis = Long.parseLong(options.getOrDefault("teacherThinkMs", "2000"));
+        decisionBatch = Integer.parseInt(options.getOrDefault("decisionBatch", "10"));
+        approveRatio = Double.parseDouble(options.getOrDefault("approveRatio", "0.8"));
+        days = Integer.parseInt(options.getOrDefault("days", "14"));
+        maxInFlight = Integer.parseInt(options.getOrDefault("maxInFlight", "10000"));
+        if (students < 1 || teachers < 1 || days < 1 || decisionBatch < 1) {
+            throw new IllegalArgumentException("students, teachers, days and decisionBatch must be at least 1");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("schedule.storage") == null) {
+            System.setProperty("schedule.storage", "memory");
+        }
+        Map<String, String> options = parseOptions(args);
+        WorkloadSimulator simulator = new WorkloadSimulator(options);
+        SeedData.schedule(FIRST_TEACHER_ID, simulator.teachers, FIRST_STUDENT_ID, simulator.students);
+
+        Map<String, Object> report = simulator.run();
+        simulator.print(report);
+        if (options.containsKey("out")) {
+            Path out = Path.of(options.get("out"));
+            Files.writeString(out, Json.write(report) + System.lineSeparator());
+            System.out.println("Report written to " + out.toAbsolutePath());
+        }
+        System.exit(0);
+    }
+
+    Map<String, Object> run() throws InterruptedException {
+        Map<String, Long> countersBefore = Metrics.counters();
+        Thread sampler = Thread.ofPlatform().daemon().name("workload-pool-sampler").start(poolSampler);
+        long started = System.nanoTime();
+        long deadline = started + durationNanos;
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < teachers; t++) {
+                int teacherId = FIRST_TEACHER_ID + t;
+                threads.submit(() -> teacherLoop(teacherId));
+            }
+            if (arrivalRate > 0) {
+                threads.submit(() -> arrivals(threads, started));
+            } else {
+                for (int s = 0; s < students; s++) {
+                    int studentId = FIRST_STUDENT_ID + s;
+                    threads.submit(() -> studentLoop(studentId));
+                }
+            }
+            sleepUntil(deadline);
+            running = false;
+        }
+        long elapsed = System.nanoTime() - started;
+
+        // Journaled writes still have to reach the database; their drain time is part of the cost
+        long drainStarted = System.nanoTime();
+        WriteJournal journal = Repositories.journal();
+        int backlog = journal != null ? journal.backlog() : 0;
+        while (journal != null && journal.backlog() > 0
+               && System.nanoTime() - drainStarted < TimeUnit.SECONDS.toNanos(60)) {
+            Thread.sleep(50);
+        }
+        long drained = System.nanoTime() - drainStarted;
+        poolSampler.stop();
+        sampler.join();
+        return report(elapsed, journal, backlog, drained, countersBefore);
+    }
+
+    private void studentLoop(int studentId) {
+        while (running) {
+            requestAppointment(studentId, System.nanoTime());
+            think(studentThinkMillis);
+        }
+    }
+
+    // Open model: the request rate does not depend on how fast requests complete
+    private void arrivals(ExecutorService threads, long started) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long due = started;
+        while (running) {
+            due += (long) (-Math.log(1 - random.nextDouble()) / arrivalRate * 1e9);
+            sleepUntil(due);
+            if (!running) {
+                break;
+            }
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                dropped.increment();
+                continue;
+            }
+            int studentId = FIRST_STUDENT_ID + random.nextInt(students);
+            long scheduled = due;
+            threads.submit(() -> {
+                try {
+                    requestAppointment(studentId, scheduled);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void requestAppointment(int studentId, long started) {
+        int teacherId = FIRST_TEACHER_ID + ThreadLocalRandom.current().nextInt(teachers);
+        try {
+            BookingService.Result result = BookingService.request(studentId, teacherId, randomSlot());
+            if (result.booked()) {
+                booked.increment();
+            } else {
+                conflicts.increment();
+                if (BookingService.request(studentId, teacherId, result.suggestion()).booked()) {
+                    bookedOnRetry.increment();
+                }
+            }
+            histogram("requestAppointment").record(System.nanoTime() - started);
+        } catch (Exception ex) {
+            failed("requestAppointment", ex);
+        }
+    }
+
+    private void teacherLoop(int teacherId) {
+        AppointmentRepository repo = Repositories.appointments();
+        Map<Integer, Appointment> seen = new HashMap<>();
+        Timestamp since = null;
+        while (running) {
+            long t0 = System.nanoTime();
+            try {
+                for (Appointment change : repo.changesForTeacher(teacherId, since)) {
+                    seen.put(change.id(), change);
+                    if (since == null || change.updatedAt().after(since)) {
+                        since = change.updatedAt();
+                    }
+                }
+                histogram("teacherRefresh").record(System.nanoTime() - t0);
+            } catch (Exception ex) {
+                failed("teacherRefresh", ex);
+            }
+
+            List<Appointment> approve = new ArrayList<>();
+            List<Appointment> decline = new ArrayList<>();
+            for (Appointment appointment : seen.values()) {
+                if (approve.size() + decline.size() == decisionBatch) {
+                    break;
+                }
+                if ("pending".equals(appointment.status())) {
+                    (ThreadLocalRandom.current().nextDouble() < approveRatio ? approve : decline).add(appointment);
+                }
+            }
+            approved.add(decide(teacherId, approve, "approved", seen));
+            int declinedNow = decide(teacherId, decline, "declined", seen);
+            if (declinedNow > 0) {
+                declined.add(declinedNow);
+                BookingService.invalidate(teacherId);
+            }
+            think(teacherThinkMillis);
+        }
+    }
+
+    // The same compare-and-set TeacherPanel makes, through the journal when there is one (which
+    // checks versions later and counts conflicts as journal.conflicts). Returns how many were decided.
+    private int decide(int teacherId, List<Appointment> batch, String status, Map<Integer, Appointment> seen) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int[] appointmentIds = batch.stream().mapToInt(Appointment::id).toArray();
+        int[] versions = batch.stream().mapToInt(Appointment::version).toArray();
+        long t0 = System.nanoTime();
+        try {
+            WriteJournal journal = Repositories.journal();
+            int[] conflicts = new int[0];
+            if (journal != null) {
+                journal.setStatus(teacherId, appointmentIds, versions, status);
+            } else {
+                conflicts = Repositories.appointments().updateStatus(teacherId, appointmentIds, versions, status);
+            }
+            histogram("updateAppointmentStatus").record(System.nanoTime() - t0);
+            statusConflicts.add(conflicts.length);
+            Set<Integer> conflicted = Arrays.stream(conflicts).boxed().collect(Collectors.toSet());
+            for (Appointment a : batch) {
+                if (conflicted.contains(a.id())) {
+                    continue; // the next refresh brings the row as someone else left it
+                }
+                seen.put(a.id(), new Appointment(a.id(), a.teacherId(), a.studentId(), a.teacherName(), a.studentName(),
+                    a.time(), a.slot(), status, a.updatedAt(), a.version() + 1));
+            }
+            return batch.size() - conflicts.length;
+        } catch (Exception ex) {
+            failed("updateAppointmentStatus", ex);
+            return 0;
+        }
+    }
+
+    private TimeSlot randomSlot() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDateTime start = LocalDate.now().plusDays(1 + random.nextInt(days))
+            .atTime(LocalTime.of(FIRST_HOUR, 0)).plusMinutes(30L * random.nextInt(HALF_HOURS_PER_DAY));
+        return new TimeSlot(start, start.plus(TimeSlot.DEFAULT_LENGTH));
+    }
+
+    private void failed(String operation, Exception ex) {
+        histogram(operation).recordError();
+        errors.computeIfAbsent(operation + ": " + ex.getClass().getSimpleName(), k -> new LongAdder()).increment();
+    }
+
+    private LatencyHistogram histogram(String operation) {
+        return latencies.computeIfAbsent(operation, k -> new LatencyHistogram());
+    }
+
+    // Exponentially distributed around the mean, capped so the run stops promptly
+    private void think(long meanMillis) {
+        if (meanMillis <= 0) {
+            return;
+        }
+        double millis = -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanMillis;
+        sleepUntil(System.nanoTime() + (long) (Math.min(millis, meanMillis * 10.0) * 1e6));
+    }
+
+    private void sleepUntil(long deadline) {
+        long remaining;
+        while (running && (remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(POOL_SAMPLE_MILLIS)));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Map<String, Object> report(long elapsedNanos, WriteJournal journal, int backlog, long drainNanos,
+                                       Map<String, Long> countersBefore) {
+        double seconds = elapsedNanos / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("storage", System.getProperty("schedule.storage"));
+        config.put("journal", journal != null);
+        config.put("students", students);
+        config.put("teachers", teachers);
+        config.put("model", arrivalRate > 0 ? "open" : "closed");
+        if (arrivalRate > 0) {
+            config.put("arrivalRate", arrivalRate);
+        } else {
+            config.put("studentThinkMs", studentThinkMillis);
+        }
+        config.put("teacherThinkMs", teacherThinkMillis);
+        config.put("decisionBatch", decisionBatch);
+        config.put("approveRatio", approveRatio);
+        config.put("days", days);
+        report.put("config", config);
+        report.put("seconds", round(seconds));
+
+        Map<String, Object> operations = new TreeMap<>();
+        long attempts = 0;
+        long failures = 0;
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram.Snapshot s = entry.getValue().snapshot();
+            Map<String, Object> op = new LinkedHashMap<>();
+            op.put("count", s.count());
+            op.put("errors", s.errors());
+            op.put("opsPerSecond", round(s.count() / seconds));
+            op.put("p50Millis", round(s.p50Millis()));
+            op.put("p99Millis", round(s.p99Millis()));
+            op.put("maxMillis", round(s.maxMillis()));
+            operations.put(entry.getKey(), op);
+            attempts += s.count() + s.errors();
+            failures += s.errors();
+        }
+        report.put("operations", operations);
+
+        long requests = booked.sum() + conflicts.sum();
+        Map<String, Object> outcomes = new LinkedHashMap<>();
+        outcomes.put("booked", booked.sum());
+        outcomes.put("conflicts", conflicts.sum());
+        outcomes.put("bookedOnRetry", bookedOnRetry.sum());
+        outcomes.put("conflictRate", round(requests == 0 ? 0 : (double) conflicts.sum() / requests));
+        outcomes.put("approved", approved.sum());
+        outcomes.put("declined", declined.sum());
+        outcomes.put("statusConflicts", statusConflicts.sum());
+        outcomes.put("errorRate", round(attempts == 0 ? 0 : (double) failures / attempts));
+        Map<String, Long> errorCounts = new TreeMap<>();
+        errors.forEach((kind, count) -> errorCounts.put(kind, count.sum()));
+        outcomes.put("errors", errorCounts);
+        if (arrivalRate > 0) {
+            outcomes.put("droppedArrivals", dropped.sum());
+        }
+        report.put("outcomes", outcomes);
+
+        if (journal != null) {
+            Map<String, Object> journalReport = new LinkedHashMap<>();
+            journalReport.put("backlogAtEnd", backlog);
+            journalReport.put("drainSeconds", round(drainNanos / 1e9));
+            journalReport.put("backlogAfterDrain", journal.backlog());
+            Metrics.counters().forEach((name, value) -> {
+                if (name.startsWith("journal.")) {
+                    journalReport.put(name.substring("journal.".length()), value - countersBefore.getOrDefault(name, 0L));
+                }
+            });
+            report.put("journal", journalReport);
+        }
+        report.put("connections", poolSampler.report());
+        return report;
+    }
+
+    private void print(Map<String, Object> report) {
+        System.out.println(Json.write(report.get("config")));
+        System.out.printf(Locale.ROOT, "%.1f s%n", (Double) report.get("seconds"));
+        for (Map.Entry<String, Object> entry : asMap(report.get("operations")).entrySet()) {
+            Map<String, Object> op = asMap(entry.getValue());
+            System.out.printf(Locale.ROOT, "%-24s n=%-8d errors=%-6d %10.1f ops/s  p50=%8.2f ms  p99=%8.2f ms  max=%8.2f ms%n",
+                entry.getKey(), op.get("count"), op.get("errors"), op.get("opsPerSecond"),
+                op.get("p50Millis"), op.get("p99Millis"), op.get("maxMillis"));
+        }
+        System.out.println("outcomes    " + Json.write(report.get("outcomes")));
+        if (report.containsKey("journal")) {
+            System.out.println("journal     " + Json.write(report.get("journal")));
+        }
+        System.out.println("connections " + Json.write(report.get("connections")));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    // Samples Database.poolStats() while the workload runs; the pool's own counters cover the rest.
+    // Never touches the pool with the in-memory store, where asking for stats would open one.
+    private static class PoolSampler implements Runnable {
+        private final boolean pooled = Repositories.memoryStore() == null && Database.poolStats() != null;
+        private final ConnectionPool.Stats before = pooled ? Database.poolStats() : null;
+        private volatile boolean stopped;
+        private int samples;
+        private long activeSum;
+        private int maxActive;
+        private int maxWaiting;
+        private ConnectionPool.Stats last;
+
+        @Override
+        public void run() {
+            while (pooled && !stopped) {
+                ConnectionPool.Stats stats = Database.poolStats();
+                if (stats == null) {
+                    return;
+                }
+                samples++;
+                activeSum += stats.active();
+                maxActive = Math.max(maxActive, stats.active());
+                maxWaiting = Math.max(maxWaiting, stats.waiting());
+                last = stats;
+                try {
+                    Thread.sleep(POOL_SAMPLE_MILLIS);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        // Read after the sampler thread has been joined
+        Map<String, Object> report() {
+            Map<String, Object> report = new LinkedHashMap<>();
+            if (last == null) {
+                report.put("pooled", false);
+                return report;
+            }
+            report.put("pooled", true);
+            report.put("maxSize", last.maxSize());
+            report.put("meanActive", round(samples == 0 ? 0 : (double) activeSum / samples));
+            report.put("maxActive", maxActive);
+            report.put("maxWaiting", maxWaiting);
+            report.put("created", last.created() - before.created());
+            report.put("borrows", last.borrows() - before.borrows());
+            report.put("timeouts", last.timeouts() - before.timeouts());
+            report.put("avgWaitMillis", round(last.avgWaitMillis()));
+            report.put("maxWaitMillis", round(last.maxWaitMillis()));
+            LatencyHistogram.Snapshot connect = Metrics.snapshot().get("db.connect");
+            if (connect != null) {
+                report.put("connectP99Millis", round(connect.p99Millis()));
+            }
+            return report;
+        }
+    }
+}
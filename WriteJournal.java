@@ -0,0 +1,442 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+import javax.swing.SwingUtilities;
+
+// Write-behind journal for appointment requests and status changes. A write is appended to a
+// memory-mapped file and acknowledged at once; one background thread applies the writes to the
+// database in order, up to -Dschedule.journal.batchSize (default 200) per transaction, and then
+// records them as applied in the file header. While the database is unreachable the flusher backs
+// off and retries, so a slow or restarting database delays writes instead of failing them. After a
+// crash the unapplied tail is replayed on the next start; JournalWrite makes re-applying harmless.
+//
+// The file is -Dschedule.journal.path (default ~/.schedule-manager/journal.dat), sized
+// -Dschedule.journal.sizeKB (default 4096). Appends start again at the top whenever everything has
+// been applied, and fail with an IOException once the file is full. Mapped pages survive a crash of
+// the process; -Dschedule.journal.fsync=true also forces each append to disk, which survives power
+// loss at the cost of a disk flush per write.
+//
+// Layout: a 16-byte header (magic, version, sequence number of the last applied write), then
+// records of [length][CRC32C][sequence number][type][payload], ended by a zero length. A record's
+// length is written last, so a torn append reads as the end of the journal.
+public final class WriteJournal {
+    private static final Logger LOG = Logger.getLogger(WriteJournal.class.getName());
+    private static final int MAGIC = 0x534D4A4C; // "SMJL"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int APPLIED_SEQ_OFFSET = 8;
+    private static final int RECORD_HEAD = 8; // length, CRC
+    private static final byte REQUEST = 1;
+    private static final byte STATUS_CHANGE = 2; // written before appointments had versions
+    private static final byte VERSIONED_STATUS_CHANGE = 3;
+    private static final int BATCH_SIZE = Integer.getInteger("schedule.journal.batchSize", 200);
+    private static final long MAX_BACKOFF_MILLIS = 5_000;
+
+    private final Path file;
+    private final FileLock fileLock; // held for the life of the process
+    private final MappedByteBuffer map;
+    private final boolean fsync;
+    private final AppointmentRepository target;
+    private final Map<Integer, List<Consumer<JournalWrite.Request>>> rejectionListeners = new ConcurrentHashMap<>();
+    private final Map<Integer, List<Consumer<JournalWrite.StatusChange>>> conflictListeners = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>(); // guarded by lock, in sequence order
+    private long nextSeq;                                         // guarded by lock
+    private int writePosition;                                    // guarded by lock
+
+    private record Entry(long seq, JournalWrite write) {
+    }
+
+    private WriteJournal(Path file, FileLock fileLock, MappedByteBuffer map, boolean fsync,
+                         AppointmentRepository target) {
+        this.file = file;
+        this.fileLock = fileLock;
+        this.map = map;
+        this.fsync = fsync;
+        this.target = target;
+    }
+
+    // Opens the journal configured by the schedule.journal.* properties
+    public static WriteJournal open(AppointmentRepository target) throws IOException {
+        Path file = Path.of(System.getProperty("schedule.journal.path",
+            Path.of(System.getProperty("user.home"), ".schedule-manager", "journal.dat").toString()));
+        int capacity = (int) Math.min(Integer.MAX_VALUE, Long.getLong("schedule.journal.sizeKB", 4096) * 1024);
+        return open(file, capacity, Boolean.getBoolean("schedule.journal.fsync"), target);
+    }
+
+    // Maps the file, queues every write not yet applied and starts the flusher. Only one process
+    // can have a journal file open.
+    public static WriteJournal open(Path file, int capacity, boolean fsync, AppointmentRepository target)
+            throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                throw new IOException("The write journal " + file + " is in use by another process");
+            }
+            long size = Math.max(channel.size(), Math.max(capacity, HEADER_BYTES + RECORD_HEAD + 4));
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            WriteJournal journal = new WriteJournal(file, fileLock, map, fsync, target);
+            journal.recover();
+            Thread flusher = new Thread(journal::flushLoop, "write-journal");
+            flusher.setDaemon(true);
+            flusher.start();
+            return journal;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    // Queues a pending appointment request; the teacher's overlap check happens when it is applied,
+    // and listeners registered with onRejected hear about requests that lose
+    public JournalWrite.Request requestAppointment(int studentId, int teacherId, TimeSlot slot) throws IOException {
+        JournalWrite.Request request = new JournalWrite.Request(UUID.randomUUID().toString(), studentId, teacherId, slot);
+        append(request);
+        return request;
+    }
+
+    // Queues a status change made against the given versions; listeners registered with
+    // onStatusConflict hear about changes that find some appointment changed by someone else
+    public void setStatus(int teacherId, int[] appointmentIds, int[] versions, String status) throws IOException {
+        append(new JournalWrite.StatusChange(teacherId, appointmentIds.clone(), versions.clone(), status));
+    }
+
+    // Requests of the student that were journaled but found taken when applied; called on the EDT
+    public AppointmentFeed.Subscription onRejected(int studentId, Consumer<JournalWrite.Request> listener) {
+        return subscribe(rejectionListeners, studentId, listener);
+    }
+
+    // Status changes of the teacher that were journaled but left some appointments alone because
+    // their versions had moved on; called on the EDT. The others in the change were applied.
+    public AppointmentFeed.Subscription onStatusConflict(int teacherId, Consumer<JournalWrite.StatusChange> listener) {
+        return subscribe(conflictListeners, teacherId, listener);
+    }
+
+    private static <T> AppointmentFeed.Subscription subscribe(Map<Integer, List<Consumer<T>>> listenersById, int id,
+                                                              Consumer<T> listener) {
+        listenersById.computeIfAbsent(id, k -> new CopyOnWriteArrayList<>()).add(listener);
+        return () -> {
+            List<Consumer<T>> listeners = listenersById.get(id);
+            if (listeners != null) {
+                listeners.remove(listener);
+            }
+        };
+    }
+
+    // Writes accepted but not yet applied to the database
+    public int backlog() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Teacher id to requests still waiting in the journal, for teachers that have any
+    public Map<Integer, Long> backlogByTeacher() {
+        Map<Integer, Long> requests = new HashMap<>();
+        lock.lock();
+        try {
+            for (Entry entry : pending) {
+                if (entry.write() instanceof JournalWrite.Request request) {
+                    requests.merge(request.teacherId(), 1L, Long::sum);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return requests;
+    }
+
+    private void append(JournalWrite write) throws IOException {
+        long started = System.nanoTime();
+        byte[] payload = encode(write);
+        int length = Long.BYTES + payload.length;
+        lock.lock();
+        try {
+            int end = writePosition + RECORD_HEAD + length;
+            if (end + Integer.BYTES > map.capacity()) {
+                throw new IOException("The write journal " + file + " is full; " + pending.size()
+                    + " writes are waiting for the database");
+            }
+            long seq = nextSeq++;
+            map.slice(writePosition + RECORD_HEAD, length).putLong(seq).put(payload);
+            map.putInt(writePosition + Integer.BYTES, crc(writePosition + RECORD_HEAD, length));
+            map.putInt(end, 0);
+            map.putInt(writePosition, length);
+            if (fsync) {
+                map.force(writePosition, end + Integer.BYTES - writePosition);
+            }
+            writePosition = end;
+            pending.addLast(new Entry(seq, write));
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+        Metrics.count("journal.appended");
+        Metrics.record("journal.append", System.nanoTime() - started);
+    }
+
+    // Reads the records from the top; a bad length or CRC, or a sequence number that does not
+    // increase (left over from before the last restart at the top), ends the journal
+    private void recover() throws IOException {
+        int magic = map.getInt(0);
+        if (magic == 0) {
+            map.putInt(0, MAGIC);
+            map.putInt(Integer.BYTES, VERSION);
+            map.putLong(APPLIED_SEQ_OFFSET, 0);
+        } else if (magic != MAGIC || map.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException(file + " is not a version " + VERSION + " write journal");
+        }
+        long applied = map.getLong(APPLIED_SEQ_OFFSET);
+        long lastSeq = applied;
+        long previousSeq = Long.MIN_VALUE;
+        int position = HEADER_BYTES;
+        while (position + RECORD_HEAD <= map.capacity()) {
+            int length = map.getInt(position);
+            if (length <= Long.BYTES || length > map.capacity() - position - RECORD_HEAD
+                    || map.getInt(position + Integer.BYTES) != crc(position + RECORD_HEAD, length)) {
+                break;
+            }
+            ByteBuffer body = map.slice(position + RECORD_HEAD, length);
+            long seq = body.getLong();
+            if (seq <= previousSeq) {
+                break;
+            }
+            previousSeq = seq;
+            lastSeq = Math.max(lastSeq, seq);
+            if (seq > applied) {
+                pending.addLast(new Entry(seq, decode(body)));
+            }
+            position += RECORD_HEAD + length;
+        }
+        nextSeq = lastSeq + 1;
+        writePosition = position;
+        if (pending.isEmpty()) {
+            restartAtTop();
+        } else {
+            LOG.info("Replaying " + pending.size() + " journaled writes from " + file);
+        }
+    }
+
+    private void flushLoop() {
+        long backoff = 0;
+        while (true) {
+            List<Entry> batch = new ArrayList<>();
+            lock.lock();
+            try {
+                while (pending.isEmpty()) {
+                    appended.awaitUninterruptibly();
+                }
+                Iterator<Entry> entries = pending.iterator();
+                while (entries.hasNext() && batch.size() < BATCH_SIZE) {
+                    batch.add(entries.next());
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                apply(batch);
+                if (backoff > 0) {
+                    LOG.info("The database is accepting journaled writes again");
+                }
+                backoff = 0;
+            } catch (SQLException | RuntimeException ex) {
+                if (backoff == 0) {
+                    LOG.log(Level.WARNING, "Could not apply journaled writes; retrying", ex);
+                }
+                Metrics.recordError("journal.flush");
+                backoff = Math.min(MAX_BACKOFF_MILLIS, Math.max(100, backoff * 2));
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Applies the batch and marks it applied. Writes the database refuses outright (e.g. a student
+    // who has since been deleted) are found by applying one at a time, logged and dropped; any
+    // other failure is thrown and the whole batch is tried again later.
+    private void apply(List<Entry> batch) throws SQLException {
+        List<JournalWrite> writes = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            writes.add(entry.write());
+        }
+        long started = System.nanoTime();
+        boolean[] applied;
+        try {
+            applied = target.applyWrites(writes);
+        } catch (SQLIntegrityConstraintViolationException | SQLDataException ex) {
+            if (batch.size() > 1) {
+                for (Entry entry : batch) {
+                    apply(List.of(entry));
+                }
+                return;
+            }
+            LOG.log(Level.SEVERE, "Dropping journaled write the database refuses: " + writes.get(0), ex);
+            Metrics.count("journal.dropped");
+            applied = new boolean[1];
+        }
+        Metrics.record("journal.flush", System.nanoTime() - started);
+        markApplied(batch);
+        Metrics.count("journal.applied", batch.size());
+        for (int i = 0; i < applied.length; i++) {
+            if (!applied[i]) {
+                switch (writes.get(i)) {
+                    case JournalWrite.Request request -> rejected(request);
+                    case JournalWrite.StatusChange change -> conflicted(change);
+                }
+            }
+        }
+    }
+
+    // The header is updated before the top of the file is cleared, so a crash in between leaves
+    // only applied records behind
+    private void markApplied(List<Entry> batch) {
+        lock.lock();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                pending.removeFirst();
+            }
+            map.putLong(APPLIED_SEQ_OFFSET, batch.get(batch.size() - 1).seq());
+            if (fsync) {
+                map.force(0, HEADER_BYTES);
+            }
+            if (pending.isEmpty()) {
+                restartAtTop();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void restartAtTop() {
+        map.putInt(HEADER_BYTES, 0);
+        if (fsync) {
+            map.force(HEADER_BYTES, Integer.BYTES);
+        }
+        writePosition = HEADER_BYTES;
+    }
+
+    private void rejected(JournalWrite.Request request) {
+        Metrics.count("journal.rejected");
+        BookingService.invalidate(request.teacherId());
+        List<Consumer<JournalWrite.Request>> listeners = rejectionListeners.get(request.studentId());
+        if (listeners == null || listeners.isEmpty()) {
+            LOG.info("Journaled request " + request + " was rejected; the slot was already taken");
+            return;
+        }
+        SwingUtilities.invokeLater(() -> listeners.forEach(listener -> listener.accept(request)));
+    }
+
+    private void conflicted(JournalWrite.StatusChange change) {
+        Metrics.count("journal.conflicts");
+        List<Consumer<JournalWrite.StatusChange>> listeners = conflictListeners.get(change.teacherId());
+        if (listeners == null || listeners.isEmpty()) {
+            LOG.info("Journaled " + change + " found appointments changed by someone else and left them alone");
+            return;
+        }
+        SwingUtilities.invokeLater(() -> listeners.forEach(listener -> listener.accept(change)));
+    }
+
+    private int crc(int position, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(map.slice(position, length));
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(JournalWrite write) {
+        return switch (write) {
+            case JournalWrite.Request r -> {
+                UUID key = UUID.fromString(r.key());
+                yield ByteBuffer.allocate(1 + 2 * Long.BYTES + 2 * Integer.BYTES + 2 * Long.BYTES)
+                    .put(REQUEST)
+                    .putLong(key.getMostSignificantBits()).putLong(key.getLeastSignificantBits())
+                    .putInt(r.studentId()).putInt(r.teacherId())
+                    .putLong(r.slot().startMinute()).putLong(r.slot().endMinute())
+                    .array();
+            }
+            case JournalWrite.StatusChange c -> {
+                byte[] status = c.status().getBytes(StandardCharsets.UTF_8);
+                boolean versioned = c.versions() != null;
+                int perId = versioned ? 2 * Integer.BYTES : Integer.BYTES;
+                ByteBuffer buffer = ByteBuffer.allocate(1 + Integer.BYTES + Short.BYTES + status.length
+                        + Integer.BYTES + c.appointmentIds().length * perId)
+                    .put(versioned ? VERSIONED_STATUS_CHANGE : STATUS_CHANGE)
+                    .putInt(c.teacherId())
+                    .putShort((short) status.length).put(status)
+                    .putInt(c.appointmentIds().length);
+                for (int i = 0; i < c.appointmentIds().length; i++) {
+                    buffer.putInt(c.appointmentIds()[i]);
+                    if (versioned) {
+                        buffer.putInt(c.versions()[i]);
+                    }
+                }
+                yield buffer.array();
+            }
+        };
+    }
+
+    private static JournalWrite decode(ByteBuffer body) throws IOException {
+        byte type = body.get();
+        switch (type) {
+            case REQUEST: {
+                String key = new UUID(body.getLong(), body.getLong()).toString();
+                int studentId = body.getInt();
+                int teacherId = body.getInt();
+                TimeSlot slot = TimeSlot.ofMinutes(body.getLong(), body.getLong());
+                return new JournalWrite.Request(key, studentId, teacherId, slot);
+            }
+            case STATUS_CHANGE, VERSIONED_STATUS_CHANGE: {
+                int teacherId = body.getInt();
+                byte[] status = new byte[body.getShort()];
+                body.get(status);
+                int[] ids = new int[body.getInt()];
+                int[] versions = type == VERSIONED_STATUS_CHANGE ? new int[ids.length] : null;
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = body.getInt();
+                    if (versions != null) {
+                        versions[i] = body.getInt();
+                    }
+                }
+                return new JournalWrite.StatusChange(teacherId, ids, versions, new String(status, StandardCharsets.UTF_8));
+            }
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Compares two JMH JSON reports (-rf json) and fails when a benchmark got slower than the
+// threshold allows. Sampled benchmarks are compared on their median, others on their score;
+// throughput scores (ops per time unit) count as slower when they drop.
+//
+// Usage: java -cp target/benchmarks.jar BenchmarkBaseline [--threshold 0.25] baseline.json current.json
+//
+// Exit status: 0 without regressions, 1 with any, 2 on bad arguments.
+public final class BenchmarkBaseline {
+    private BenchmarkBaseline() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        double threshold = 0.25;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--help", "-h" -> {
+                    usage();
+                    System.exit(0);
+                }
+                case "--threshold" -> {
+                    if (i + 1 == args.length) {
+                        usage();
+                        System.exit(2);
+                    }
+                    threshold = Double.parseDouble(args[++i]);
+                }
+                default -> {
+                    if (args[i].startsWith("-")) {
+                        System.err.println("Unknown option " + args[i]);
+                        usage();
+                        System.exit(2);
+                    }
+                    files.add(Path.of(args[i]));
+                }
+            }
+        }
+        if (files.size() != 2) {
+            usage();
+            System.exit(2);
+        }
+
+        Map<String, Score> baseline = read(files.get(0));
+        Map<String, Score> current = read(files.get(1));
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            Score now = entry.getValue();
+            if (before == null || before.value() <= 0 || !before.unit().equals(now.unit())) {
+                continue;
+            }
+            double change = now.higherIsBetter() ? before.value() / now.value() - 1 : now.value() / before.value() - 1;
+            if (change > threshold) {
+                regressions++;
+                System.out.printf(Locale.ROOT, "REGRESSION %s: %.3f -> %.3f %s (%.0f%% worse)%n", entry.getKey(),
+                    before.value(), now.value(), now.unit(), change * 100);
+            }
+        }
+        System.out.println(regressions == 0 ? "No regressions against " + files.get(0) : regressions + " regression(s)");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java BenchmarkBaseline [--threshold 0.25] baseline.json current.json");
+        System.err.println("Both files are JMH reports written with -rf json.");
+    }
+
+    private record Score(double value, String unit) {
+        boolean higherIsBetter() {
+            return unit.startsWith("ops/");
+        }
+    }
+
+    // Keyed by benchmark name and parameters, e.g. bench.SchedulingBenchmark.loginLookup{users=1000}
+    private static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        if (!(Json.parse(Files.readString(file)) instanceof List<?> runs)) {
+            throw new IllegalArgumentException(file + " is not a JMH JSON report");
+        }
+        for (Object item : runs) {
+            if (!(item instanceof Map<?, ?> run) || !(run.get("primaryMetric") instanceof Map<?, ?> metric)) {
+                continue;
+            }
+            Map<String, String> params = new TreeMap<>();
+            if (run.get("params") instanceof Map<?, ?> given) {
+                given.forEach((name, value) -> params.put(String.valueOf(name), String.valueOf(value)));
+            }
+            Object value = metric.get("score");
+            if (metric.get("scorePercentiles") instanceof Map<?, ?> percentiles && percentiles.get("50.0") != null) {
+                value = percentiles.get("50.0");
+            }
+            if (value instanceof Number number) {
+                scores.put(run.get("benchmark") + (params.isEmpty() ? "" : params.toString()),
+                    new Score(number.doubleValue(), String.valueOf(metric.get("scoreUnit"))));
+            }
+        }
+        return scores;
+    }
+}
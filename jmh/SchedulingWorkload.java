@@ -0,0 +1,156 @@
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// The data paths bench.SchedulingBenchmark measures, through the same repositories and services
+// the UI uses. Runs against InMemoryStore unless started with -Dschedule.storage=jdbc, in which
+// case it seeds and uses the database configured by -Dschedule.db.url (point it at a scratch
+// database). Every JMH fork seeds again; rows an earlier fork left behind are reused.
+public final class SchedulingWorkload implements bench.SchedulingOps {
+    private static final String PASSWORD = "password";
+    private static final int PAGE_SIZE = 200;
+    private static final int TEACHERS = 50;
+    private static final int STUDENTS = 1000;
+    private static final int APPOINTMENTS_PER_TEACHER = 1000;
+    private static final int FIRST_STUDENT_ID = 1_000_000;
+    private static final int FIRST_TEACHER_ID = 2_000_000;
+
+    private int users;
+    private long nextSlotMinute;
+    private Timestamp seededAt;
+    private int[] ids;
+    private int[] versions;
+    private String[] statuses;
+    private int cursor;
+
+    public SchedulingWorkload() {
+        if (System.getProperty("schedule.storage") == null) {
+            System.setProperty("schedule.storage", "memory");
+        }
+    }
+
+    @Override
+    public void seedUsers(int users) throws Exception {
+        SeedData.users(1, users, PASSWORD);
+        this.users = users;
+    }
+
+    @Override
+    public void seedSchedule() throws Exception {
+        SeedData.schedule(FIRST_TEACHER_ID, TEACHERS, FIRST_STUDENT_ID, STUDENTS);
+        AppointmentRepository repo = Repositories.appointments();
+        // Start after anything an earlier fork booked, so requestAppointment never meets a conflict
+        nextSlotMinute = TimeSlot.toMinute(LocalDateTime.now().plusYears(1).truncatedTo(ChronoUnit.HOURS));
+        int[] existing = new int[TEACHERS];
+        for (int t = 0; t < TEACHERS; t++) {
+            List<Appointment> rows = repo.changesForTeacher(FIRST_TEACHER_ID + t, null);
+            existing[t] = rows.size();
+            for (Appointment row : rows) {
+                nextSlotMinute = Math.max(nextSlotMinute, row.slot().endMinute());
+            }
+        }
+        for (int t = 0; t < TEACHERS; t++) {
+            for (int a = existing[t]; a < APPOINTMENTS_PER_TEACHER; a++) {
+                repo.insertIfFree(FIRST_STUDENT_ID + a % STUDENTS, FIRST_TEACHER_ID + t, nextSlot());
+            }
+        }
+        seededAt = new Timestamp(System.currentTimeMillis());
+
+        // approveDecline flips these between approved and declined, so every call is a real write
+        List<Appointment> rows = repo.changesForTeacher(FIRST_TEACHER_ID, null);
+        ids = rows.stream().mapToInt(Appointment::id).toArray();
+        versions = rows.stream().mapToInt(Appointment::version).toArray();
+        statuses = rows.stream().map(Appointment::status).toArray(String[]::new);
+    }
+
+    // The indexed credential lookup only; password hashing cost is fixed by configuration
+    @Override
+    public Object loginLookup() throws Exception {
+        int id = 1 + ThreadLocalRandom.current().nextInt(users);
+        UserRepository.Credentials credentials = Repositories.users().findCredentials("user" + id, "Student");
+        if (credentials == null) {
+            throw new IllegalStateException("user" + id + " not found");
+        }
+        return credentials;
+    }
+
+    @Override
+    public Object loadUsersFirstPage() throws Exception {
+        UserRepository repo = Repositories.users();
+        repo.estimateCount();
+        return repo.findPageAfter(Integer.MIN_VALUE, PAGE_SIZE);
+    }
+
+    @Override
+    public Object loadUsersJumpToMiddle() throws Exception {
+        UserRepository repo = Repositories.users();
+        Integer start = repo.idAtOffsetAfter(Integer.MIN_VALUE, users / 2);
+        return repo.findPageAfter(start, PAGE_SIZE);
+    }
+
+    @Override
+    public int loadUsersFullScroll() throws Exception {
+        UserRepository repo = Repositories.users();
+        int after = Integer.MIN_VALUE;
+        int read = 0;
+        List<User> page;
+        do {
+            page = repo.findPageAfter(after, PAGE_SIZE);
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).id();
+            }
+            read += page.size();
+        } while (page.size() == PAGE_SIZE);
+        return read;
+    }
+
+    @Override
+    public Object teacherAppointmentsFullLoad() throws Exception {
+        return Repositories.appointments().changesForTeacher(randomTeacher(), null);
+    }
+
+    // Nothing has changed since the seed, so this is the cost of an idle refresh
+    @Override
+    public Object teacherAppointmentsDelta() throws Exception {
+        return Repositories.appointments().changesForTeacher(randomTeacher(), seededAt);
+    }
+
+    @Override
+    public Object requestAppointment() throws Exception {
+        BookingService.Result result = BookingService.request(randomStudent(), randomTeacher(), nextSlot());
+        if (!result.booked()) {
+            throw new IllegalStateException("Unexpected booking conflict");
+        }
+        return result;
+    }
+
+    @Override
+    public Object approveDecline() throws Exception {
+        int i = cursor++ % ids.length;
+        String status = statuses[i].equals("approved") ? "declined" : "approved";
+        int[] conflicts = Repositories.appointments().updateStatus(
+            FIRST_TEACHER_ID, new int[]{ids[i]}, new int[]{versions[i]}, status);
+        if (conflicts.length > 0) {
+            throw new IllegalStateException("Unexpected version conflict");
+        }
+        statuses[i] = status;
+        versions[i]++;
+        return conflicts;
+    }
+
+    private TimeSlot nextSlot() {
+        long start = nextSlotMinute;
+        nextSlotMinute += 30;
+        return TimeSlot.ofMinutes(start, start + 30);
+    }
+
+    private static int randomTeacher() {
+        return FIRST_TEACHER_ID + ThreadLocalRandom.current().nextInt(TEACHERS);
+    }
+
+    private static int randomStudent() {
+        return FIRST_STUDENT_ID + ThreadLocalRandom.current().nextInt(STUDENTS);
+    }
+}
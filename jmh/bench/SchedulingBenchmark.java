@@ -0,0 +1,97 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Login lookup, user list paging, a teacher's appointment load, requestAppointment and
+// approve/decline, measured through SchedulingWorkload. Sampled per call, so the JSON report
+// carries p50/p99 as well as the mean. Build with `mvn -P jmh package`, then for example:
+//
+//   java -cp target/benchmarks.jar:lib/mysql-connector-j-9.2.0.jar org.openjdk.jmh.Main \
+//        -rf json -rff bench-results.json
+//
+// JMH's own options apply (-h lists them): -p users=1000 picks one size, -f/-wi/-i override the
+// forks and iterations below, and -jvmArgsAppend -Dschedule.storage=jdbc measures MySQL.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SchedulingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Users {
+        @Param({"1000", "10000", "100000"})
+        public int users;
+
+        SchedulingOps ops;
+
+        @Setup(Level.Trial)
+        public void seed() throws Exception {
+            ops = SchedulingOps.create();
+            ops.seedUsers(users);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Schedule {
+        SchedulingOps ops;
+
+        @Setup(Level.Trial)
+        public void seed() throws Exception {
+            ops = SchedulingOps.create();
+            ops.seedSchedule();
+        }
+    }
+
+    @Benchmark
+    public Object loginLookup(Users state) throws Exception {
+        return state.ops.loginLookup();
+    }
+
+    @Benchmark
+    public Object loadUsersFirstPage(Users state) throws Exception {
+        return state.ops.loadUsersFirstPage();
+    }
+
+    @Benchmark
+    public Object loadUsersJumpToMiddle(Users state) throws Exception {
+        return state.ops.loadUsersJumpToMiddle();
+    }
+
+    @Benchmark
+    public int loadUsersFullScroll(Users state) throws Exception {
+        return state.ops.loadUsersFullScroll();
+    }
+
+    @Benchmark
+    public Object teacherAppointmentsFullLoad(Schedule state) throws Exception {
+        return state.ops.teacherAppointmentsFullLoad();
+    }
+
+    @Benchmark
+    public Object teacherAppointmentsDelta(Schedule state) throws Exception {
+        return state.ops.teacherAppointmentsDelta();
+    }
+
+    @Benchmark
+    public Object requestAppointment(Schedule state) throws Exception {
+        return state.ops.requestAppointment();
+    }
+
+    @Benchmark
+    public Object approveDecline(Schedule state) throws Exception {
+        return state.ops.approveDecline();
+    }
+}
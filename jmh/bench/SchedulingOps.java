@@ -0,0 +1,33 @@
+package bench;
+
+// The scheduling operations SchedulingBenchmark measures. JMH will not generate code for classes in
+// the default package, and code in a named package cannot refer to the application's classes, so
+// the benchmarks reach them through this interface; SchedulingWorkload implements it.
+public interface SchedulingOps {
+    // Seeds users 1..users (skipping those already present) and remembers the count for the user benchmarks
+    void seedUsers(int users) throws Exception;
+
+    // Seeds the teachers, students and appointments the appointment benchmarks work on
+    void seedSchedule() throws Exception;
+
+    Object loginLookup() throws Exception;
+
+    Object loadUsersFirstPage() throws Exception;
+
+    Object loadUsersJumpToMiddle() throws Exception;
+
+    // Returns the number of users read
+    int loadUsersFullScroll() throws Exception;
+
+    Object teacherAppointmentsFullLoad() throws Exception;
+
+    Object teacherAppointmentsDelta() throws Exception;
+
+    Object requestAppointment() throws Exception;
+
+    Object approveDecline() throws Exception;
+
+    static SchedulingOps create() throws ReflectiveOperationException {
+        return (SchedulingOps) Class.forName("SchedulingWorkload").getDeclaredConstructor().newInstance();
+    }
+}